@@ -0,0 +1,78 @@
+package qirkat;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static qirkat.PieceColor.*;
+
+/** Benchmarks of the AI's static evaluation and search.  Each operation
+ *  is one pass over the whole Corpus.
+ *  @author andrew
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class AIBench {
+
+    /** Depth of the searches measured by findMove. */
+    @Param({ "4" })
+    public int depth;
+
+    /** Create the AIs. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _game = new Game(new Board(),
+                         new ReaderSource(new StringReader(""), false),
+                         new TextReporter());
+        _white = new AI(_game, WHITE);
+        _black = new AI(_game, BLACK);
+        _white.setTimeLimit(0);
+        _black.setTimeLimit(0);
+    }
+
+    /** Empty the transposition table, so that each search starts from
+     *  scratch. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        _game.transpositions().clear();
+    }
+
+    /** Evaluate each position in CORPUS statically, feeding the values
+     *  to SINK. */
+    @Benchmark
+    public void staticScore(Corpus corpus, Blackhole sink) {
+        for (Board b : corpus.positions) {
+            sink.consume(_white.staticScore(b));
+        }
+    }
+
+    /** Search each position in CORPUS that has a legal move to depth
+     *  DEPTH, feeding the moves found to SINK. */
+    @Benchmark
+    public void findMove(Corpus corpus, Blackhole sink) {
+        for (int i = 0; i < corpus.positions.length; i += 1) {
+            Board b = corpus.positions[i];
+            if (corpus.moves[i].length > 0) {
+                AI ai = b.whoseMove() == WHITE ? _white : _black;
+                sink.consume(ai.findMove(b, depth));
+            }
+        }
+    }
+
+    /** Game supplying the AIs' transposition table. */
+    private Game _game;
+    /** The AIs playing each side. */
+    private AI _white, _black;
+
+}
@@ -0,0 +1,54 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of the Board operations used by the AI's search.  Each
+ *  operation is one pass over the whole Corpus.
+ *  @author andrew
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BoardBench {
+
+    /** Generate the legal moves from each position in CORPUS, feeding
+     *  them to SINK. */
+    @Benchmark
+    public void getMoves(Corpus corpus, Blackhole sink) {
+        for (Board b : corpus.positions) {
+            sink.consume(b.getMoves());
+        }
+    }
+
+    /** Check the legality of each candidate move in CORPUS, feeding the
+     *  results to SINK. */
+    @Benchmark
+    public void legalMove(Corpus corpus, Blackhole sink) {
+        for (int i = 0; i < corpus.positions.length; i += 1) {
+            Board b = corpus.positions[i];
+            for (Move mov : corpus.candidates[i]) {
+                sink.consume(b.legalMove(mov));
+            }
+        }
+    }
+
+    /** Make and undo each legal move from each position in CORPUS,
+     *  feeding the resulting keys to SINK. */
+    @Benchmark
+    public void makeUndo(Corpus corpus, Blackhole sink) {
+        for (int i = 0; i < corpus.positions.length; i += 1) {
+            Board b = corpus.positions[i];
+            for (Move mov : corpus.moves[i]) {
+                b.makeMove(mov);
+                sink.consume(b.key());
+                b.undo();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** The positions on which the benchmarks run: the initial position and
+ *  every distinct position that arises while replaying the 'clear',
+ *  'set', and move commands of the integration tests (testing/*.inp,
+ *  or the files in the directory given by the system property
+ *  qirkat.corpus).  Other commands, including those that would let an AI
+ *  move, are ignored, so the corpus does not depend on the AI.
+ *  @author andrew
+ */
+@State(Scope.Benchmark)
+public class Corpus {
+
+    /** Default directory holding the input files. */
+    static final String DEFAULT_DIR = "../testing";
+
+    /** The positions, in order of first appearance. */
+    Board[] positions;
+    /** MOVES[I] is the list of legal moves from POSITIONS[I]. */
+    Move[][] moves;
+    /** CANDIDATES[I] contains the legal moves from POSITIONS[I] together
+     *  with all single steps by the pieces of the side to move, whether
+     *  legal or not. */
+    Move[][] candidates;
+    /** The denotations of all moves in MOVES. */
+    String[] denotations;
+
+    /** Read the corpus. */
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        File dir = new File(System.getProperty("qirkat.corpus", DEFAULT_DIR));
+        File[] inputs = dir.listFiles((d, name) -> name.endsWith(".inp"));
+        if (inputs == null || inputs.length == 0) {
+            throw new IOException("no .inp files in " + dir);
+        }
+        Arrays.sort(inputs);
+        LinkedHashMap<String, Board> found = new LinkedHashMap<>();
+        Board board = new Board();
+        add(found, board);
+        for (File input : inputs) {
+            board = new Board();
+            for (String line : Files.readAllLines(input.toPath())) {
+                Command cmnd = Command.parseCommand(line);
+                switch (cmnd.commandType()) {
+                case CLEAR:
+                    board = new Board();
+                    break;
+                case SETBOARD:
+                    board = new Board();
+                    board.setPieces(cmnd.operands()[1], PieceColor.valueOf(
+                                        cmnd.operands()[0].toUpperCase()));
+                    break;
+                case PIECEMOVE:
+                    Move mov = Move.parseMove(cmnd.operands()[0]);
+                    if (!board.legalMove(mov)) {
+                        continue;
+                    }
+                    board.makeMove(mov);
+                    break;
+                default:
+                    continue;
+                }
+                add(found, board);
+            }
+        }
+
+        positions = found.values().toArray(new Board[0]);
+        moves = new Move[positions.length][];
+        candidates = new Move[positions.length][];
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < positions.length; i += 1) {
+            Board b = positions[i];
+            moves[i] = b.getMoves().toArray(new Move[0]);
+            ArrayList<Move> cands = new ArrayList<>(Arrays.asList(moves[i]));
+            for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+                if (b.get(k) == b.whoseMove()) {
+                    for (int to : Geometry.steps(b.whoseMove(), k)) {
+                        cands.add(Move.move(k, to));
+                    }
+                }
+            }
+            candidates[i] = cands.toArray(new Move[0]);
+            for (Move mov : moves[i]) {
+                names.add(mov.toString());
+            }
+        }
+        denotations = names.toArray(new String[0]);
+    }
+
+    /** Add a copy of BOARD to FOUND, unless it already has an equal
+     *  position. */
+    private static void add(LinkedHashMap<String, Board> found,
+                            Board board) {
+        found.putIfAbsent(board.whoseMove() + board.toString(),
+                          new Board(board));
+    }
+
+}
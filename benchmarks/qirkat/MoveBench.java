@@ -0,0 +1,28 @@
+package qirkat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of Move creation.  Each operation is one pass over the
+ *  whole Corpus.
+ *  @author andrew
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MoveBench {
+
+    /** Parse the denotation of every legal move in CORPUS, feeding the
+     *  Moves to SINK. */
+    @Benchmark
+    public void parseMove(Corpus corpus, Blackhole sink) {
+        for (String denotation : corpus.denotations) {
+            sink.consume(Move.parseMove(denotation));
+        }
+    }
+
+}
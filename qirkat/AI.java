@@ -3,7 +3,9 @@ package qirkat;
 /**import java.util.*;*/
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 import static qirkat.PieceColor.*;
@@ -13,24 +15,118 @@ import static qirkat.PieceColor.*;
  */
 class AI extends Player {
 
-    /** Maximum minimax search depth before going to static evaluation. */
+    /** Default minimax search depth before going to static evaluation,
+     *  when there is no time limit. */
     private static final int MAX_DEPTH = 8;
+    /** Maximum search depth when there is a time limit. */
+    private static final int MAX_TIMED_DEPTH = 64;
+    /** The clock is consulted once every CLOCK_INTERVAL + 1 positions
+     *  (CLOCK_INTERVAL + 1 a power of 2). */
+    private static final int CLOCK_INTERVAL = 1023;
+    /** Number of plies from the root for which killer moves are kept. */
+    private static final int MAX_PLY = MAX_TIMED_DEPTH;
+    /** Ordering priorities of the transposition table's move and of the
+     *  two killer moves.  Those of captures are their numbers of jumps,
+     *  and those of other moves their history scores, all lower. */
+    private static final int
+        HINT_PRIORITY = Integer.MAX_VALUE,
+        KILLER_PRIORITY = HINT_PRIORITY - 2;
+    /** Priority marking a move that has already been tried. */
+    private static final int TRIED = Integer.MIN_VALUE;
+    /** Maximum number of non-quiet positions that the quiescence
+     *  search visits from one leaf. */
+    private static final int QUIESCENCE_NODES = 64;
+    /** Late move reductions apply to moves after the first LMR_MOVES
+     *  at a position searched at least LMR_DEPTH levels deep. */
+    private static final int LMR_MOVES = 3, LMR_DEPTH = 3;
+    /** Futility pruning applies to positions searched at most
+     *  FUTILITY_DEPTH levels deep, where a search of D levels assumes
+     *  that no non-capturing move gains more than D * FUTILITY_MARGIN
+     *  pieces over the static value. */
+    private static final int FUTILITY_DEPTH = 2, FUTILITY_MARGIN = 1;
+    /** The half-width of the initial aspiration window around the value
+     *  found by the previous iteration of a search is the value of a
+     *  piece divided by ASPIRATION_DIVISOR (but at least 1). */
+    private static final int ASPIRATION_DIVISOR = 2;
+    /** Initial size of each search's move stack. */
+    private static final int INITIAL_MOVE_STACK = 16 * Board.TYPICAL_MOVES;
     /** A position magnitude indicating a win (for white if positive, black
      *  if negative). */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /** The magnitude of the value of a position known from the tablebases
+     *  to be won, apart from its static value. */
+    private static final int TABLEBASE_VALUE = WINNING_VALUE / 2;
     /** A magnitude greater than a normal value. */
     private static final int INFTY = Integer.MAX_VALUE;
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
         super(game, myColor);
+        _timeLimit = game.timeLimit();
+        _threads = Main.threads();
+        _reductions = Main.reductions();
+        _futility = Main.futility();
+        _evaluator = game.evaluator();
+        _tablebase = Main.tablebase();
+    }
+
+    /** Limit my searches to MILLIS milliseconds per move, or search to a
+     *  fixed depth if MILLIS is 0. */
+    void setTimeLimit(long millis) {
+        _timeLimit = millis;
+    }
+
+    /** Search DEPTH >= 1 levels when I have no time limit. */
+    void setDepth(int depth) {
+        _depth = depth;
+    }
+
+    /** Search using THREADS >= 1 threads. */
+    void setThreads(int threads) {
+        _threads = threads;
+    }
+
+    /** Evaluate the leaves of my searches with EVALUATOR. */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+    }
+
+    /** Consult TABLEBASE, if not null, for positions with few pieces. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Use late move reductions in my searches iff ON. */
+    void setReductions(boolean on) {
+        _reductions = on;
+    }
+
+    /** Use futility pruning in my searches iff ON. */
+    void setFutility(boolean on) {
+        _futility = on;
+    }
+
+    /** Ponder (see startPondering) iff ON. */
+    void setPondering(boolean on) {
+        _pondering = on;
+        if (!on) {
+            stop();
+        }
     }
 
     @Override
     Move myMove() {
-        Main.startTiming();
-        Move move = findMove();
-        Main.endTiming();
+        Move move = bookMove();
+        if (move == null) {
+            Main.startTiming();
+            move = ponderResult();
+            if (move == null) {
+                move = findMove();
+            }
+            Main.endTiming();
+        } else {
+            stop();
+        }
 
         Reporter reporter = game().reporter();
         Board tempBoard = new Board(game().getBoard());
@@ -41,33 +137,216 @@ class AI extends Player {
         if (game().getBoard().toString().equals("  b - - b -\n  "
                 + "- - - - -\n  - b - - w\n  b - - - -\n  b w w - -")) {
             if (tempBoard.legalMove(temp)) {
-                reporter.outcomeMsg(myColor()
-                        + " moves " + temp.toString() + ".");
-                return temp;
+                move = temp;
             }
         }
 
         reporter.outcomeMsg(myColor() + " moves " + move.toString() + ".");
+        startPondering(move);
         return move;
     }
 
+    @Override
+    void stop() {
+        if (_ponderTask != null) {
+            _cancelled = true;
+            ponderMove();
+        }
+    }
+
+    /** If I ponder, start a search, in another thread, of the position
+     *  that will arise if the opponent answers my move MOVE with the
+     *  reply my last search expected (the move from that position in
+     *  the transposition table), so as to fill the table in advance on
+     *  the opponent's time.  This search is speculative until my next
+     *  move: if the opponent makes that reply (a "ponder hit"), it
+     *  continues as the search for my move, with the time spent so far
+     *  counting towards my time limit.  Only the main Searcher ponders,
+     *  never helpers. */
+    private void startPondering(Move move) {
+        if (!_pondering) {
+            return;
+        }
+        Board board = new Board(game().getBoard());
+        board.makeMove(move);
+        long[] replies = new long[Board.TYPICAL_MOVES];
+        int numReplies = board.getMoves(replies, 0);
+        if (numReplies > replies.length) {
+            replies = new long[numReplies];
+            board.getMoves(replies, 0);
+        }
+        long entry = game().transpositions().probe(board.key());
+        if (entry == TranspositionTable.MISSING
+            || TranspositionTable.move(entry) == TranspositionTable.NO_MOVE
+            || TranspositionTable.move(entry) >= numReplies) {
+            return;
+        }
+        board.makeMove(replies[TranspositionTable.move(entry)]);
+        if (board.getMoves(replies, 0) == 0) {
+            return;
+        }
+        _ponderKey = board.key();
+        _speculating = true;
+        _cancelled = false;
+        _startTime = System.currentTimeMillis();
+        Searcher searcher = new Searcher(board, game().transpositions(),
+                                         game().history(), 0);
+        _ponderTask = new FutureTask<>(searcher::search);
+        Thread thread = new Thread(_ponderTask);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Return the move found by pondering if the current position is the
+     *  one pondered (a ponder hit), waiting for the search to end as a
+     *  normal search would.  Otherwise, or if I have not been pondering,
+     *  stop pondering and return null. */
+    Move ponderResult() {
+        if (_ponderTask == null) {
+            return null;
+        } else if (game().getBoard().key() != _ponderKey) {
+            stop();
+            return null;
+        }
+        _speculating = false;
+        return ponderMove();
+    }
+
+    /** Return true iff I have started a pondering search of the
+     *  position on BOARD whose result has not yet been used or
+     *  discarded. */
+    boolean ponders(Board board) {
+        return _ponderTask != null && board.key() == _ponderKey;
+    }
+
+    /** Wait for the pondering search to end and return its move (null if
+     *  it found none), after which I am no longer pondering. */
+    private Move ponderMove() {
+        FutureTask<Move> task = _ponderTask;
+        _ponderTask = null;
+        try {
+            return task.get();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            _speculating = false;
+        }
+    }
+
+    /** Return a move for the current position from my game's opening
+     *  book, or null if it has none. */
+    private Move bookMove() {
+        OpeningBook book = game().book();
+        return book == null ? null : book.select(game().getBoard(), game());
+    }
+
     /** Return a move for me from the current position, assuming there
      *  is a move. */
     private Move findMove() {
-        Board b = new Board(game().getBoard());
+        return search(game().getBoard(),
+                      _timeLimit > 0 ? MAX_TIMED_DEPTH : _depth, true);
+    }
+
+    /** Return a move for me from BOARD, assuming there is a move, found
+     *  by searching at most MAXDEPTH levels, and only until a forced win
+     *  or loss is found iff STOPONWIN (see Searcher.search).  Runs my
+     *  main Searcher, together with _threads - 1 helper Searchers in
+     *  other threads that share the game's transposition table (the
+     *  "lazy SMP" scheme).  The helpers' only product is the table
+     *  entries they leave for the main search, which alone chooses the
+     *  move.  They run until the main search is done.  Sets
+     *  _measuredValue and _measuredNodes from the main search. */
+    private Move search(Board board, int maxDepth, boolean stopOnWin) {
+        TranspositionTable table = game().transpositions();
+        HistoryTable history = game().history();
+        Thread[] helpers = new Thread[_threads - 1];
+
+        _startTime = System.currentTimeMillis();
+        _stopped = false;
+        for (int k = 0; k < helpers.length; k += 1) {
+            Searcher helper =
+                new Searcher(new Board(board), table, history, k + 1);
+            helpers[k] =
+                new Thread(() -> helper.search(maxDepth, stopOnWin));
+            helpers[k].setDaemon(true);
+            helpers[k].start();
+        }
+        Searcher main = new Searcher(new Board(board), table, history, 0);
+        Move best = main.search(maxDepth, stopOnWin);
+        _stopped = true;
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _measuredValue = main._lastScore;
+        _measuredNodes = main._nodes;
+        return best;
+    }
 
+    /** Return the move I would choose from BOARD (with me to move) with
+     *  a single search of exactly DEPTH levels in the calling thread,
+     *  assuming that there is a move and that I have no time limit.
+     *  Used to measure the search.  BOARD is unchanged. */
+    Move findMove(Board board, int depth) {
+        Searcher searcher = new Searcher(new Board(board),
+                                         game().transpositions(),
+                                         game().history(), 0);
+        Move result = searcher.search(depth);
+        _measuredNodes = searcher._nodes;
+        return result;
+    }
 
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+    /** Return the value of BOARD (with me to move), positive if it
+     *  favors White, found by a search of DEPTH levels, assuming that I
+     *  have no time limit.  Unless PLAIN, this is the search that
+     *  chooses my moves, with all my threads, which uses my game's
+     *  transposition table; otherwise it is a plain alpha-beta search
+     *  with a full window in the calling thread, which does not.  Used
+     *  to check the search.  BOARD is unchanged. */
+    int value(Board board, int depth, boolean plain) {
+        if (!plain) {
+            search(board, depth, false);
+            return _measuredValue;
         }
-        return _lastFoundMove;
+        Searcher searcher = new Searcher(new Board(board),
+                                         game().transpositions(),
+                                         game().history(), 0);
+        int result = searcher.alphaBeta(depth);
+        _measuredNodes = searcher._nodes;
+        return result;
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
+    /** Return the codes of the legal moves from BOARD in the order in
+     *  which my search would try them at its root, given the current
+     *  contents of my game's transposition and history tables.  Used to
+     *  check the move ordering.  BOARD is unchanged. */
+    long[] moveOrder(Board board) {
+        return new Searcher(new Board(board), game().transpositions(),
+                            game().history(), 0).moveOrder();
+    }
+
+    /** Return the number of levels by which my search of DEPTH levels
+     *  from BOARD (with me to move) reduces the search of the move CODE
+     *  when it is the Nth move tried there (from 0), after the move
+     *  KILLER has caused a cutoff there.  Used to check the reductions.
+     *  BOARD is unchanged. */
+    int reduction(Board board, int depth, int n, long code, long killer) {
+        return new Searcher(new Board(board), game().transpositions(),
+                            game().history(), 0)
+            .reduction(n, depth, code, killer);
+    }
+
+    /** Return the number of positions visited by the last search made
+     *  by findMove(Board, int) or value (by its main thread). */
+    long measuredNodes() {
+        return _measuredNodes;
+    }
 
     /**Prune MOVES B. */
     void prune(ArrayList<Move> moves) {
@@ -85,123 +364,592 @@ class AI extends Player {
     }
 
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        Move best;
-        best = null;
+    /** One thread's iterative-deepening search from a private copy of
+     *  the game board.  Searcher 0 is the main search; the others are
+     *  helpers, which start at alternating depths so that the threads
+     *  do not all search the same tree in lockstep.
+     *
+     *  At each position, the move recorded in the transposition table is
+     *  tried first, then captures (all moves are captures if any is), the
+     *  longest first; otherwise, the two most recent moves to cause a
+     *  cutoff at the same distance from the root (killer moves), and then
+     *  the rest in order of their scores in the shared history table. */
+    private class Searcher {
+
+        /** A Searcher with identifying number ID, searching BOARD (which
+         *  it may modify) and sharing TABLE and HISTORY with the other
+         *  Searchers. */
+        Searcher(Board board, TranspositionTable table, HistoryTable history,
+                 int id) {
+            _board = board;
+            _board.setEvaluator(_evaluator);
+            _table = table;
+            _history = history;
+            _id = id;
+        }
+
+        /** Search to depths 1, 2, ... until the time limit expires (or to
+         *  _depth if there is none), a forced win or loss is found, or
+         *  (for helpers) the main search finishes.  Return the move chosen
+         *  by the deepest search that completed.  Each search starts from
+         *  the principal variation of the last, which the transposition
+         *  table remembers. */
+        Move search() {
+            return search(_timeLimit > 0 ? MAX_TIMED_DEPTH : _depth, true);
+        }
 
-        int[] bestScore = new int[1];
+        /** Search as for search(), but to at most MAXDEPTH levels, and
+         *  only until a forced win or loss is found iff STOPONWIN.  Set
+         *  _lastScore to the value found by the deepest search that
+         *  completed. */
+        private Move search(int maxDepth, boolean stopOnWin) {
+            int sense = myColor() == WHITE ? 1 : -1;
+            Move best;
+            int first = 1 + _id % 2;
+            int score;
+
+            best = null;
+            score = 0;
+            for (int depth = first; depth <= maxDepth; depth += 1) {
+                score = aspirate(depth, sense, depth == first, score);
+                if (_aborted) {
+                    break;
+                }
+                best = _lastFoundMove;
+                _lastScore = score;
+                if (stopOnWin && Math.abs(score) == WINNING_VALUE) {
+                    break;
+                }
+            }
+            return best;
+        }
 
-        ArrayList<Move> possibleMoves = board.getMoves();
-        prune(possibleMoves);
+        /** Search the root to DEPTH levels, with the side of SENSE to
+         *  move, and return its value.  Unless FULL, the search begins
+         *  with a narrow (aspiration) window around GUESS, the value found
+         *  by the previous iteration, which is widened on the side on
+         *  which the value falls outside it until the value falls inside.
+         *  Otherwise, the window is unbounded. */
+        private int aspirate(int depth, int sense, boolean full,
+                             int guess) {
+            int alpha, beta, delta;
+            delta = Math.max(1, _evaluator.materialValue()
+                             / ASPIRATION_DIVISOR);
+            if (full) {
+                alpha = -INFTY;
+                beta = INFTY;
+            } else {
+                alpha = widen(guess, -delta);
+                beta = widen(guess, delta);
+            }
+            while (true) {
+                int score =
+                    findMove(_board, depth, true, sense, alpha, beta);
+                if (_aborted) {
+                    return score;
+                }
+                delta *= 2;
+                if (score <= alpha) {
+                    alpha = widen(score, -delta);
+                } else if (score >= beta) {
+                    beta = widen(score, delta);
+                } else {
+                    return score;
+                }
+            }
+        }
 
-        if (depth == 0) {
-            return staticScore(board);
+        /** Return the search bound SCORE + DELTA, or +-INFTY if that is
+         *  beyond the range of normal values. */
+        private int widen(int score, int delta) {
+            long bound = (long) score + delta;
+            if (bound >= WINNING_VALUE) {
+                return INFTY;
+            } else if (bound <= -WINNING_VALUE) {
+                return -INFTY;
+            }
+            return (int) bound;
         }
 
-        if (board.gameOver()) {
-            return staticScore(board);
+        /** Return the value of my board, searched to DEPTH levels by
+         *  plain alpha-beta search (see alphaBeta(Board, ...)). */
+        int alphaBeta(int depth) {
+            int sense = myColor() == WHITE ? 1 : -1;
+            return alphaBeta(_board, depth, sense, -INFTY, INFTY);
         }
 
-        if (sense == 1) {
-            Move temp = posSense(bestScore,
-                    possibleMoves, board, alpha, beta, depth);
-            if (temp != null) {
-                best = temp;
+        /** Return the value of BOARD, searched to DEPTH levels with the
+         *  side of SENSE to move, as for findMove with window ALPHA ..
+         *  BETA, but by plain alpha-beta search: the moves are tried in
+         *  the order generated, each with the full window, without
+         *  reductions or pruning, and the transposition table is not
+         *  used.  The leaves are valued as by findMove.  This is the
+         *  reference against which findMove is checked. */
+        private int alphaBeta(Board board, int depth, int sense, int alpha,
+                              int beta) {
+            if (_ply > 0 && _tablebase != null) {
+                int result = _tablebase.probe(board);
+                if (result != Tablebase.UNKNOWN) {
+                    return tablebaseScore(board, result);
+                }
+            }
+            if (depth == 0 || board.gameOver()) {
+                _quiescent = 0;
+                return quiesce(board, sense, alpha, beta);
             }
+            int start = _top;
+            int end = generate(board);
+            if (end == start) {
+                return board.whoseMove() == WHITE
+                    ? -WINNING_VALUE : WINNING_VALUE;
+            }
+            int bestScore = -sense * INFTY;
+            _top = end;
+            for (int i = start; i < end && alpha < beta; i += 1) {
+                board.makeMove(_moves[i]);
+                _ply += 1;
+                int score = alphaBeta(board, depth - 1, -sense, alpha, beta);
+                _ply -= 1;
+                board.undo();
+                if (sense * score > sense * bestScore) {
+                    bestScore = score;
+                }
+                if (sense == 1) {
+                    alpha = Math.max(alpha, bestScore);
+                } else {
+                    beta = Math.min(beta, bestScore);
+                }
+            }
+            _top = start;
+            return bestScore;
+        }
 
-        } else {
-            Move temp = negSense(bestScore,
-                    possibleMoves, board, alpha, beta, depth);
-            if (temp != null) {
-                best = temp;
+        /** Return the codes of the legal moves from my board in the order
+         *  in which findMove would try them. */
+        long[] moveOrder() {
+            long entry = _table.probe(_board.key());
+            int start = _top;
+            int end = generate(_board);
+            int hint = entry == TranspositionTable.MISSING
+                ? TranspositionTable.NO_MOVE : TranspositionTable.move(entry);
+            if (hint >= end - start) {
+                hint = TranspositionTable.NO_MOVE;
+            }
+            prioritize(_board.whoseMove(), start, end, hint);
+            long[] result = new long[end - start];
+            for (int k = 0; k < result.length; k += 1) {
+                result[k] = _moves[start + nextMove(start, end)];
             }
+            return result;
+        }
 
+        /** Return reduction(N, DEPTH, CODE) at the root, after the move
+         *  KILLER has caused a cutoff there. */
+        int reduction(int n, int depth, long code, long killer) {
+            recordCutoff(_board.whoseMove(), killer, depth);
+            return reduction(n, depth, code);
         }
 
-        if (saveMove) {
-            _lastFoundMove = best;
+        /** Return the move chosen by a search of DEPTH levels. */
+        Move search(int depth) {
+            int sense = myColor() == WHITE ? 1 : -1;
+            findMove(_board, depth, true, sense, -INFTY, INFTY);
+            return _lastFoundMove;
         }
 
-        return bestScore[0];
+        /** Return true iff the current search must be abandoned because
+         *  the time limit has passed, because it is a speculative search
+         *  that has been cancelled (see startPondering), or, for a helper,
+         *  because the main search has finished.  The clock is consulted
+         *  only occasionally, never while speculating, and never before a
+         *  move has been found. */
+        private boolean timeUp() {
+            if (_aborted) {
+                return true;
+            } else if (_id != 0) {
+                _aborted = _stopped;
+            } else if (_speculating) {
+                _aborted = _cancelled;
+            } else if (_timeLimit > 0 && _lastFoundMove != null
+                       && (_nodes & CLOCK_INTERVAL) == 0) {
+                _aborted =
+                    System.currentTimeMillis() - _startTime >= _timeLimit;
+            }
+            _nodes += 1;
+            return _aborted;
+        }
 
-    }
+        /** Find a move from position BOARD and return its value, recording
+         *  the move found in _lastFoundMove iff SAVEMOVE. The move
+         *  should have maximal value or have value > BETA if SENSE==1,
+         *  and minimal value or value < ALPHA if SENSE==-1. Searches up
+         *  to DEPTH levels.  Searching at level 0 returns the value found
+         *  by quiesce and does not set _lastMoveFound.
+         *  Results are cached in the transposition table: a cached result
+         *  of a search at least DEPTH deep whose bound settles the
+         *  question is returned immediately (except when SAVEMOVE, which
+         *  needs an actual move), and otherwise the cached best move is
+         *  tried first.  If the search is abandoned (see timeUp), returns
+         *  an arbitrary value, leaving _lastFoundMove and the table
+         *  unchanged. */
+        private int findMove(Board board, int depth, boolean saveMove,
+                             int sense, int alpha, int beta) {
+            if (timeUp()) {
+                return 0;
+            }
+            if (!saveMove && _tablebase != null) {
+                int result = _tablebase.probe(board);
+                if (result != Tablebase.UNKNOWN) {
+                    return tablebaseScore(board, result);
+                }
+            }
+            if (depth == 0 || board.gameOver()) {
+                _quiescent = 0;
+                return quiesce(board, sense, alpha, beta);
+            }
+
+            long key = board.key();
+            long entry = _table.probe(key);
+            int hint = TranspositionTable.NO_MOVE;
+            if (entry != TranspositionTable.MISSING) {
+                hint = TranspositionTable.move(entry);
+                int score = TranspositionTable.score(entry);
+                if (!saveMove && TranspositionTable.depth(entry) >= depth) {
+                    switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return score;
+                    case TranspositionTable.LOWER:
+                        if (score >= beta) {
+                            return score;
+                        }
+                        break;
+                    default:
+                        if (score <= alpha) {
+                            return score;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            int start = _top;
+            int end = generate(board);
+            if (end == start) {
+                return board.whoseMove() == WHITE
+                    ? -WINNING_VALUE : WINNING_VALUE;
+            }
+            if (hint >= end - start) {
+                hint = TranspositionTable.NO_MOVE;
+            }
+            prioritize(board.whoseMove(), start, end, hint);
+
+            boolean futile;
+            int futilityBound;
+            futilityBound = 0;
+            futile = _futility && !saveMove && depth <= FUTILITY_DEPTH
+                && !board.jumpPossible();
+            if (futile) {
+                futilityBound = staticScore(board) + sense * depth
+                    * FUTILITY_MARGIN * _evaluator.materialValue();
+                futile = sense == 1
+                    ? futilityBound <= alpha : futilityBound >= beta;
+            }
 
-    /**Negative sense helper RETURN move
-     * BESTSCORE POSSIBLEMOVES BOARD ALPHA BETA DEPTH.*/
-    Move negSense(int[] bestScore, ArrayList<Move> possibleMoves, Board board,
-                  int alpha, int beta, int depth) {
-        Move best = null;
-        bestScore[0] = INFTY;
-        for (int i = 0; i < possibleMoves.size(); i++) {
-            Move move = possibleMoves.get(i);
-            board.makeMove(move);
-            int score =
-                    findMove(board, depth - 1, false, 1, alpha, beta);
-            if (score < bestScore[0]) {
-                best = move;
-                bestScore[0] = score;
+            int bestScore = -sense * INFTY;
+            int best = TranspositionTable.NO_MOVE;
+            int lo = alpha, hi = beta;
+            _top = end;
+            for (int k = start; k < end && lo < hi; k += 1) {
+                /* Assume no quiet move gains over depth * FUTILITY_MARGIN
+                 * pieces, so that none beats futilityBound. */
+                if (futile && k > start) {
+                    if (sense * futilityBound > sense * bestScore) {
+                        bestScore = futilityBound;
+                    }
+                    break;
+                }
+                int i = nextMove(start, end);
+                long code = _moves[start + i];
+                int r = k == start ? 0 : reduction(k - start, depth, code);
+                board.makeMove(code);
+                _ply += 1;
+                int score;
+                if (k == start) {
+                    score = findMove(board, depth - 1, false, -sense, lo, hi);
+                } else {
+                    score = scout(board, depth - 1 - r, -sense, lo, hi);
+                    if (r > 0 && !_aborted
+                        && (sense == 1 ? score > lo : score < hi)) {
+                        score = scout(board, depth - 1, -sense, lo, hi);
+                    }
+                }
+                _ply -= 1;
+                board.undo();
+                if (_aborted) {
+                    _top = start;
+                    return 0;
+                }
+                if (sense * score > sense * bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+                if (sense == 1) {
+                    lo = Math.max(lo, bestScore);
+                } else {
+                    hi = Math.min(hi, bestScore);
+                }
+                if (lo >= hi && !MoveCode.isJump(code)) {
+                    recordCutoff(board.whoseMove(), code, depth);
+                }
             }
-            beta = Math.min(bestScore[0], beta);
-            board.undo();
-            if (beta <= alpha) {
-                return best;
+            _top = start;
+
+            int bound;
+            if (bestScore <= alpha) {
+                bound = TranspositionTable.UPPER;
+            } else if (bestScore >= beta) {
+                bound = TranspositionTable.LOWER;
+            } else {
+                bound = TranspositionTable.EXACT;
             }
+            _table.store(key, depth, bestScore, bound, best);
+
+            if (saveMove) {
+                _lastFoundMove = MoveCode.toMove(_moves[start + best]);
+            }
+            return bestScore;
         }
-        return best;
-    }
 
-    /**Positive sense helper RETURN move
-     * BESTSCORE POSSIBLEMOVES BOARD ALPHA BETA DEPTH.*/
-    Move posSense(int[] bestScore, ArrayList<Move> possibleMoves, Board board,
-                  int alpha, int beta, int depth) {
-        Move best = null;
-        bestScore[0] = -INFTY;
-        for (int i = 0; i < possibleMoves.size(); i++) {
-            Move move = possibleMoves.get(i);
-            board.makeMove(move);
-            int score =
-                    findMove(board, depth - 1, true, -1, alpha, beta);
-            if (score > bestScore[0]) {
-                best = move;
-                bestScore[0] = score;
+        /** Return the value of BOARD, with the side of SENSE to move,
+         *  at a leaf of the main search.  If the side to move has no
+         *  capture, this is the static value (it may "stand pat"), but
+         *  since captures are mandatory, a position in which it has one
+         *  is not quiet, and its value is that of the best capture,
+         *  searched in the same way.  To bound the cost of long capture
+         *  races, the search reverts to static values after visiting
+         *  QUIESCENCE_NODES non-quiet positions from one leaf.  The
+         *  result is as for findMove with window ALPHA .. BETA. */
+        private int quiesce(Board board, int sense, int alpha, int beta) {
+            if (!board.jumpPossible() || _quiescent >= QUIESCENCE_NODES) {
+                return staticScore(board);
             }
-            alpha = Math.max(bestScore[0], alpha);
-            board.undo();
-            if (beta <= alpha) {
-                return best;
+            _quiescent += 1;
+            int start = _top;
+            int end = generate(board);
+            prioritize(board.whoseMove(), start, end,
+                       TranspositionTable.NO_MOVE);
+
+            int bestScore = -sense * INFTY;
+            int lo = alpha, hi = beta;
+            _top = end;
+            for (int k = start; k < end && lo < hi; k += 1) {
+                board.makeMove(_moves[start + nextMove(start, end)]);
+                _ply += 1;
+                int score = timeUp() ? 0 : quiesce(board, -sense, lo, hi);
+                _ply -= 1;
+                board.undo();
+                if (_aborted) {
+                    _top = start;
+                    return 0;
+                }
+                if (sense * score > sense * bestScore) {
+                    bestScore = score;
+                }
+                if (sense == 1) {
+                    lo = Math.max(lo, bestScore);
+                } else {
+                    hi = Math.min(hi, bestScore);
+                }
             }
+            _top = start;
+            return bestScore;
+        }
+
+        /** Store the codes of the legal moves from BOARD on the move stack,
+         *  in _moves[_top ..], growing it if necessary, and return the
+         *  index just past the last.  Does not change _top. */
+        private int generate(Board board) {
+            int end = board.getMoves(_moves, _top);
+            if (end > _moves.length) {
+                _moves = Board.reserve(_moves, end);
+                _priorities = Arrays.copyOf(_priorities, _moves.length);
+                end = board.getMoves(_moves, _top);
+            }
+            return end;
+        }
+
+        /** Return the value of BOARD, searched to DEPTH levels with the
+         *  side of SENSE to move, as for findMove with window LO .. HI
+         *  (LO < HI), where BOARD results from a move other than the first
+         *  tried from its parent.  Such a move is expected to be no better
+         *  for the side that made it than the best so far, whose value is
+         *  LO (or HI, if that side is black), so it is first tested with a
+         *  null window at that bound, and searched with the full window
+         *  only if the test shows it to be better. */
+        private int scout(Board board, int depth, int sense, int lo,
+                          int hi) {
+            int score;
+            if (sense == -1) {
+                score = findMove(board, depth, false, sense, lo, lo + 1);
+                if (score > lo && score < hi && !_aborted) {
+                    score = findMove(board, depth, false, sense, lo, hi);
+                }
+            } else {
+                score = findMove(board, depth, false, sense, hi - 1, hi);
+                if (score < hi && score > lo && !_aborted) {
+                    score = findMove(board, depth, false, sense, lo, hi);
+                }
+            }
+            return score;
         }
-        return best;
-    }
 
-    /**Board.*/
-    private Board _board;
+        /** Return the number of levels by which to reduce the search of
+         *  the move CODE, which is the Nth move tried (from 0) at the
+         *  current ply in a search of DEPTH levels.  Late non-capturing
+         *  moves, other than killers, are unlikely to be best when the
+         *  ordering is good, and are searched one level less deeply
+         *  (and searched again to full depth if they prove better than
+         *  expected). */
+        private int reduction(int n, int depth, long code) {
+            if (!_reductions || n < LMR_MOVES || depth < LMR_DEPTH
+                || MoveCode.isJump(code)
+                || (_ply < MAX_PLY && (code == _killers[2 * _ply]
+                                       || code == _killers[2 * _ply + 1]))) {
+                return 0;
+            }
+            return 1;
+        }
+
+        /** Set _priorities[START .. END-1] to the ordering priorities of
+         *  the moves in _moves[START .. END-1], which are SIDE's moves
+         *  from the position at the current ply, where HINT is the index
+         *  of the transposition table's move (or NO_MOVE). */
+        private void prioritize(PieceColor side, int start, int end,
+                                int hint) {
+            for (int i = start; i < end; i += 1) {
+                long code = _moves[i];
+                if (i - start == hint
+                    && hint != TranspositionTable.NO_MOVE) {
+                    _priorities[i] = HINT_PRIORITY;
+                } else if (MoveCode.isJump(code)) {
+                    _priorities[i] = MoveCode.legs(code);
+                } else if (_ply < MAX_PLY && code == _killers[2 * _ply]) {
+                    _priorities[i] = KILLER_PRIORITY;
+                } else if (_ply < MAX_PLY
+                           && code == _killers[2 * _ply + 1]) {
+                    _priorities[i] = KILLER_PRIORITY - 1;
+                } else {
+                    _priorities[i] = _history.score(side,
+                                                    MoveCode.from(code),
+                                                    MoveCode.to(code));
+                }
+            }
+        }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        HashMap<String, PieceColor> hmBoard = board.getBoard();
-        ArrayList<String> whitePlaces = new ArrayList<String>();
-        ArrayList<String> blackPlaces = new ArrayList<String>();
+        /** Return the index, relative to START, of the untried move in
+         *  _moves[START .. END-1] of highest priority (the first of
+         *  those with equal priorities), and mark it as tried. */
+        private int nextMove(int start, int end) {
+            int best;
+            best = start;
+            for (int i = start + 1; i < end; i += 1) {
+                if (_priorities[i] > _priorities[best]) {
+                    best = i;
+                }
+            }
+            _priorities[best] = TRIED;
+            return best - start;
+        }
 
-        for (String s : hmBoard.keySet()) {
-            if (hmBoard.get(s).equals(PieceColor.WHITE)) {
-                whitePlaces.add(s);
-            } else if (hmBoard.get(s).equals(PieceColor.BLACK)) {
-                blackPlaces.add(s);
+        /** Record that SIDE's non-capturing move CODE at the current ply
+         *  caused a cutoff in a search of DEPTH levels. */
+        private void recordCutoff(PieceColor side, long code, int depth) {
+            if (_ply < MAX_PLY && _killers[2 * _ply] != code) {
+                _killers[2 * _ply + 1] = _killers[2 * _ply];
+                _killers[2 * _ply] = code;
             }
+            _history.reward(side, MoveCode.from(code), MoveCode.to(code),
+                            depth);
         }
 
-        int score = whitePlaces.size() - blackPlaces.size();
+        /** Position being searched. */
+        private final Board _board;
+        /** Stack of the codes of the moves being searched at each level:
+         *  each call to findMove stores those from its position in
+         *  _moves[S .. _top-1], where S is the value of _top on entry,
+         *  and restores _top on exit. */
+        private long[] _moves = new long[INITIAL_MOVE_STACK];
+        /** The first unused element of _moves. */
+        private int _top;
+        /** _priorities[I] is the ordering priority of _moves[I], or TRIED
+         *  if it has been searched. */
+        private int[] _priorities = new int[INITIAL_MOVE_STACK];
+        /** Number of non-quiet positions visited by quiesce from the
+         *  current leaf. */
+        private int _quiescent;
+        /** Number of moves from the root to the position being searched. */
+        private int _ply;
+        /** _killers[2P] and _killers[2P + 1] are the most recent and
+         *  next most recent distinct non-capturing moves to cause a cutoff
+         *  at ply P (MoveCode.NONE if none). */
+        private final long[] _killers = new long[2 * MAX_PLY];
+        /** Move-ordering scores shared with the other Searchers. */
+        private final HistoryTable _history;
+        /** Cache of search results shared with the other Searchers. */
+        private final TranspositionTable _table;
+        /** My identifying number (0 for the main search). */
+        private final int _id;
+        /** Number of positions I have visited. */
+        private long _nodes;
+        /** True iff my current search has been abandoned. */
+        private boolean _aborted;
+        /** The move found by the last call to findMove with SAVEMOVE. */
+        private Move _lastFoundMove;
+        /** The value found by the last complete search (see search). */
+        private int _lastScore;
+    }
+
+    /** Time allowed per move (milliseconds), or 0 for no limit. */
+    private long _timeLimit;
+    /** Depth of my searches when there is no time limit. */
+    private int _depth = MAX_DEPTH;
+    /** Number of threads with which I search. */
+    private int _threads;
+    /** True iff my searches use late move reductions. */
+    private boolean _reductions;
+    /** True iff my searches use futility pruning. */
+    private boolean _futility;
+    /** Static evaluation function for my searches. */
+    private Evaluator _evaluator;
+    /** Endgame tablebases consulted by my searches, or null. */
+    private Tablebase _tablebase;
+    /** Time at which the current search began (milliseconds). */
+    private long _startTime;
+    /** True iff the main search for the current move has finished. */
+    private volatile boolean _stopped;
+    /** True iff I ponder after my moves. */
+    private boolean _pondering;
+    /** The search of the position I am pondering, or null. */
+    private FutureTask<Move> _ponderTask;
+    /** The key of the position I am pondering. */
+    private long _ponderKey;
+    /** True iff the pondering search is still speculative. */
+    private volatile boolean _speculating;
+    /** True iff the speculative search has been cancelled. */
+    private volatile boolean _cancelled;
+    /** See measuredNodes. */
+    private long _measuredNodes;
+    /** The value found by the last search of value. */
+    private int _measuredValue;
+
+    /** Return a heuristic value for BOARD, as given by my evaluator.  This
+     *  is fastest if BOARD maintains the evaluator's piece values (see
+     *  Board.setEvaluator), as do the boards my searches use. */
+    int staticScore(Board board) {
+        int score = _evaluator.score(board);
 
         if (board.gameOver()) {
-            if (score > 0) {
+            if (board.whoseMove() == BLACK) {
                 return WINNING_VALUE;
             } else {
                 return -WINNING_VALUE;
@@ -211,4 +959,16 @@ class AI extends Player {
         return score;
     }
 
+    /** Return the value of BOARD given that its result in the tablebases
+     *  is RESULT.  The tables say only who wins, so a won position is
+     *  worth TABLEBASE_VALUE plus its static value, which leads the
+     *  winner to make progress toward actually winning. */
+    private int tablebaseScore(Board board, int result) {
+        int sense = board.whoseMove() == WHITE ? 1 : -1;
+        if (result == Tablebase.DRAW) {
+            return 0;
+        }
+        return result * sense * TABLEBASE_VALUE + staticScore(board);
+    }
+
 }
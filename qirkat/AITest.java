@@ -0,0 +1,442 @@
+package qirkat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of the AI's search.
+ *  @author andrew
+ */
+public class AITest {
+
+    /** The value of a won position for White. */
+    private static final int WIN = Integer.MAX_VALUE - 1;
+
+    /** Positions in the format of Board.setPieces in which White, to
+     *  move, can force a win within four plies. */
+    private static final String[] WINS = {
+        "w---- b---- ----- ----- -----",
+        "ww--- -b--- ----- --b-- -----",
+        "--w-- --w-- ----- --b-- -----",
+    };
+
+    /** Positions with White to move in which captures are forced. */
+    private static final String[] CAPTURES = {
+        "----- ----b wb-b- b-b-b -----",
+        "wb--- b-b-- -b--- ----- ----b",
+        "ww-ww ww-ww bbwww bb-bb bbbbb",
+    };
+
+    /** A position with White to move in which the longest capture,
+     *  a1-a3-c3-e5, loses the capture race that follows, and d3-d5-b5
+     *  wins it. */
+    private static final String CAPTURE_RACE =
+        "w---w b---- -b-wb ---bw --b--";
+
+    /** Return a new Game with no input and a NullReporter. */
+    private static Game game() {
+        return new Game(new Board(),
+                        new ReaderSource(new StringReader(""), false),
+                        new NullReporter());
+    }
+
+    /** Return an AI playing COLOR in GAME that searches with a single
+     *  thread, without reductions or futility pruning. */
+    private static AI exactAI(Game game, PieceColor color) {
+        AI ai = new AI(game, color);
+        ai.setThreads(1);
+        ai.setReductions(false);
+        ai.setFutility(false);
+        ai.setTablebase(null);
+        return ai;
+    }
+
+    /** Return the positions on which the search is checked: those in
+     *  WINS and CAPTURES, with each side to move, and positions from
+     *  random games. */
+    private static ArrayList<Board> positions() {
+        ArrayList<Board> result = new ArrayList<>();
+        for (String[] boards : new String[][] { WINS, CAPTURES }) {
+            for (String pieces : boards) {
+                for (PieceColor side : new PieceColor[] { WHITE, BLACK }) {
+                    Board board = new Board();
+                    board.setPieces(pieces, side);
+                    result.add(board);
+                }
+            }
+        }
+        Random random = new Random(61);
+        for (int g = 0; g < 4; g += 1) {
+            Board board = new Board();
+            for (int n = 0; n < 40; n += 1) {
+                ArrayList<Move> moves = board.getMoves();
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                if (n % 8 == 3) {
+                    result.add(new Board(board));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Check that the value found by the usual search (iterative
+     *  deepening, aspiration windows, principal variation search, and
+     *  the transposition table), and the value of the move chosen by a
+     *  single principal variation search, match those found by plain
+     *  alpha-beta search to the same depth. */
+    @Test
+    public void testSearchMatchesAlphaBeta() {
+        Game game = game();
+        AI[] players = { exactAI(game, WHITE), exactAI(game, BLACK) };
+        int wins;
+        wins = 0;
+        for (Board board : positions()) {
+            if (board.getMoves().isEmpty()) {
+                continue;
+            }
+            int side = board.whoseMove() == WHITE ? 0 : 1;
+            AI ai = players[side], other = players[1 - side];
+            for (int depth = 1; depth <= 4; depth += 1) {
+                game.transpositions().clear();
+                game.history().clear();
+                int plain = ai.value(board, depth, true);
+                game.transpositions().clear();
+                assertEquals(board + " depth " + depth, plain,
+                             ai.value(board, depth, false));
+                game.transpositions().clear();
+                Move mov = ai.findMove(board, depth);
+                assertTrue(board.legalMove(mov));
+                Board child = new Board(board);
+                child.makeMove(mov);
+                assertEquals(board + " move " + mov, plain,
+                             other.value(child, depth - 1, true));
+                if (Math.abs(plain) == WIN) {
+                    wins += 1;
+                }
+            }
+        }
+        assertTrue(wins > 0);
+    }
+
+    /** Check that late quiet moves are reduced, except for the killer
+     *  moves of the position being searched. */
+    @Test
+    public void testKillerReduction() {
+        Game game = game();
+        for (Board board : positions()) {
+            AI ai = exactAI(game, board.whoseMove());
+            ai.setReductions(true);
+            long[] order = ai.moveOrder(board);
+            if (order.length < 2 || MoveCode.isJump(order[0])) {
+                continue;
+            }
+            long killer = order[0], other = order[1];
+            int late = 10;
+            assertEquals(0, ai.reduction(board, 4, late, killer, killer));
+            assertEquals(1, ai.reduction(board, 4, late, other, killer));
+            assertEquals(0, ai.reduction(board, 4, 0, other, killer));
+            ai.setReductions(false);
+            assertEquals(0, ai.reduction(board, 4, late, other, killer));
+            return;
+        }
+        fail("no position with two quiet moves");
+    }
+
+    /** Check that an AI searching with four threads to a fixed depth
+     *  chooses legal moves and, without reductions, finds the same
+     *  values as with one. */
+    @Test(timeout = 60000)
+    public void testThreads() {
+        Game game = game();
+        try {
+            Main.parseOptions(new String[] { "--threads=4",
+                                             "--no-reductions" });
+            AI[] players = { new AI(game, WHITE), new AI(game, BLACK) };
+            AI[] single = { exactAI(game, WHITE), exactAI(game, BLACK) };
+            for (int side = 0; side < 2; side += 1) {
+                players[side].setDepth(4);
+                players[side].setTablebase(null);
+                single[side].setFutility(Main.futility());
+            }
+            for (Board board : positions()) {
+                if (board.getMoves().isEmpty()) {
+                    continue;
+                }
+                int side = board.whoseMove() == WHITE ? 0 : 1;
+                game.getBoard().copy(board);
+                game.transpositions().clear();
+                assertTrue(board.legalMove(players[side].myMove()));
+                for (int depth = 1; depth <= 4; depth += 1) {
+                    game.transpositions().clear();
+                    int value = single[side].value(board, depth, false);
+                    game.transpositions().clear();
+                    assertEquals(board + " depth " + depth, value,
+                                 players[side].value(board, depth, false));
+                }
+            }
+        } finally {
+            Main.parseOptions(new String[0]);
+        }
+    }
+
+    /** Return White's material advantage on BOARD (in pieces). */
+    private static int material(Board board) {
+        return Integer.bitCount(board.pieces(WHITE))
+            - Integer.bitCount(board.pieces(BLACK));
+    }
+
+    @Test
+    public void testQuiescence() {
+        Board board = new Board();
+        board.setPieces(CAPTURE_RACE, WHITE);
+        Move greedy;
+        int best;
+        greedy = null;
+        best = Integer.MIN_VALUE;
+        for (Move mov : board.getMoves()) {
+            board.makeMove(mov);
+            if (material(board) > best) {
+                best = material(board);
+                greedy = mov;
+            }
+            board.undo();
+        }
+        assertEquals(Move.parseMove("a1-a3-c3-e5"), greedy);
+
+        Game game = game();
+        AI white = exactAI(game, WHITE), black = exactAI(game, BLACK);
+        white.setEvaluator(Evaluator.MATERIAL);
+        black.setEvaluator(Evaluator.MATERIAL);
+        Move mov = white.findMove(board, 1);
+        assertEquals(Move.parseMove("d3-d5-b5"), mov);
+        Board after = new Board(board), afterGreedy = new Board(board);
+        after.makeMove(mov);
+        afterGreedy.makeMove(greedy);
+        assertTrue(black.value(after, 5, true)
+                   > black.value(afterGreedy, 5, true));
+    }
+
+    @Test
+    public void testMoveOrder() {
+        Game game = game();
+        AI[] players = { exactAI(game, WHITE), exactAI(game, BLACK) };
+        ArrayList<Board> boards = positions();
+        Board dense = new Board();
+        dense.setPieces(BoardTest.LONGEST_JUMP_BOARD, WHITE);
+        for (int pass = 0; pass < 2; pass += 1) {
+            for (Board board : boards) {
+                AI ai = players[board.whoseMove() == WHITE ? 0 : 1];
+                long[] order = ai.moveOrder(board);
+                long[] generated = new long[order.length];
+                assertEquals(order.length, board.getMoves(generated, 0));
+                Arrays.sort(order);
+                Arrays.sort(generated);
+                assertArrayEquals(board.toString(), generated, order);
+                for (int k = 1; k < order.length; k += 1) {
+                    assertNotEquals(order[k - 1], order[k]);
+                }
+                if (pass == 0 && order.length > 0) {
+                    ai.findMove(board, 4);
+                }
+            }
+            boards.add(dense);
+        }
+        long entry = game.transpositions().probe(boards.get(0).key());
+        assertNotEquals(TranspositionTable.MISSING, entry);
+        long[] generated = new long[Board.TYPICAL_MOVES];
+        boards.get(0).getMoves(generated, 0);
+        assertEquals(generated[TranspositionTable.move(entry)],
+                     players[0].moveOrder(boards.get(0))[0]);
+    }
+
+    /** Return a new Game, cleared, in which White is manual and Black
+     *  is an AI that ponders and searches for 100 milliseconds per
+     *  move, after Black has made its first move.  Options must call for
+     *  pondering. */
+    private static Game ponderingGame() {
+        Game game = game();
+        game.doClear(null);
+        game.doTime(new String[] { "100" });
+        game.getBoard().makeMove(Move.parseMove("c2-c3"));
+        game.getBoard().makeMove(game.player(BLACK).myMove());
+        return game;
+    }
+
+    /** Return the position on the board of GAME after REPLY. */
+    private static Board after(Game game, Move reply) {
+        Board board = new Board(game.getBoard());
+        board.makeMove(reply);
+        return board;
+    }
+
+    /** Return the White reply in GAME whose result its Black AI is
+     *  pondering, or null if there is none. */
+    private static Move ponderedReply(Game game) {
+        AI black = (AI) game.player(BLACK);
+        for (Move mov : game.getBoard().getMoves()) {
+            if (black.ponders(after(game, mov))) {
+                return mov;
+            }
+        }
+        return null;
+    }
+
+    @Test(timeout = 20000)
+    public void testPonderHit() {
+        Main.parseOptions(new String[] { "--ponder" });
+        try {
+            Game game = ponderingGame();
+            AI black = (AI) game.player(BLACK);
+            Move reply = ponderedReply(game);
+            assertNotNull(reply);
+            Board expected = after(game, reply);
+            game.getBoard().makeMove(reply);
+            Move mov = black.ponderResult();
+            assertNotNull(mov);
+            assertTrue(game.getBoard().legalMove(mov));
+            assertFalse(black.ponders(expected));
+            game.doClear(null);
+        } finally {
+            Main.parseOptions(new String[0]);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testPonderMiss() {
+        Main.parseOptions(new String[] { "--ponder" });
+        try {
+            Game game = ponderingGame();
+            AI black = (AI) game.player(BLACK);
+            Move reply = ponderedReply(game);
+            assertNotNull(reply);
+            Board expected = after(game, reply);
+            for (Move other : game.getBoard().getMoves()) {
+                if (other != reply) {
+                    game.getBoard().makeMove(other);
+                    break;
+                }
+            }
+            assertNull(black.ponderResult());
+            assertFalse(black.ponders(expected));
+            Move mov = black.myMove();
+            assertTrue(game.getBoard().legalMove(mov));
+            game.doClear(null);
+        } finally {
+            Main.parseOptions(new String[0]);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testPonderCancelledByClear() {
+        Main.parseOptions(new String[] { "--ponder" });
+        try {
+            Game game = ponderingGame();
+            AI black = (AI) game.player(BLACK);
+            Move reply = ponderedReply(game);
+            assertNotNull(reply);
+            Board expected = after(game, reply);
+            game.doClear(null);
+            assertFalse(black.ponders(expected));
+            assertNotSame(black, game.player(BLACK));
+        } finally {
+            Main.parseOptions(new String[0]);
+        }
+    }
+
+    /** Return the total number of positions visited by searches of
+     *  DEPTH levels by AIs in a new Game, for each position in
+     *  positions(), with late move reductions iff REDUCTIONS and
+     *  futility pruning iff FUTILITY, checking that each move found is
+     *  legal and that forced wins are found. */
+    private static long pruningNodes(int depth, boolean reductions,
+                                     boolean futility) {
+        Game game = game();
+        long nodes;
+        nodes = 0;
+        for (Board board : positions()) {
+            if (board.getMoves().isEmpty()) {
+                continue;
+            }
+            AI ai = exactAI(game, board.whoseMove());
+            ai.setReductions(reductions);
+            ai.setFutility(futility);
+            game.transpositions().clear();
+            game.history().clear();
+            Move mov = ai.findMove(board, depth);
+            assertTrue(board + " " + mov, board.legalMove(mov));
+            nodes += ai.measuredNodes();
+            int sense = board.whoseMove() == WHITE ? 1 : -1;
+            if (isWin(board)) {
+                assertEquals(board.toString(), sense * WIN,
+                             ai.value(board, depth, false));
+            }
+        }
+        return nodes;
+    }
+
+    /** Return true iff BOARD is one of the positions in WINS with White
+     *  to move. */
+    private static boolean isWin(Board board) {
+        for (String pieces : WINS) {
+            Board win = new Board();
+            win.setPieces(pieces, WHITE);
+            if (win.equals(board)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testPruning() {
+        long none = pruningNodes(5, false, false);
+        long reduced = pruningNodes(5, true, false);
+        long futile = pruningNodes(5, false, true);
+        long both = pruningNodes(5, true, true);
+        assertTrue(reduced < none);
+        assertTrue(futile < none);
+        assertTrue(both < reduced && both < futile);
+    }
+
+    @Test
+    public void testPruningSwitches() {
+        Game game = game();
+        Board board = positions().get(positions().size() - 2);
+        try {
+            Main.parseOptions(new String[] { "--no-reductions",
+                                             "--no-futility" });
+            assertFalse(Main.reductions());
+            assertFalse(Main.futility());
+            AI unpruned = new AI(game, board.whoseMove());
+            unpruned.findMove(board, 5);
+            game.transpositions().clear();
+            game.history().clear();
+            AI exact = exactAI(game, board.whoseMove());
+            exact.findMove(board, 5);
+            assertEquals(exact.measuredNodes(), unpruned.measuredNodes());
+        } finally {
+            Main.parseOptions(new String[0]);
+        }
+        assertTrue(Main.reductions());
+        assertTrue(Main.futility());
+        game.transpositions().clear();
+        game.history().clear();
+        AI pruned = new AI(game, board.whoseMove());
+        pruned.findMove(board, 5);
+        game.transpositions().clear();
+        game.history().clear();
+        AI exact = exactAI(game, board.whoseMove());
+        exact.findMove(board, 5);
+        assertTrue(pruned.measuredNodes() < exact.measuredNodes());
+    }
+
+}
@@ -0,0 +1,146 @@
+package qirkat;
+
+/** A cache of recently used blocks of decompressed data, identified by
+ *  long keys, holding at most a fixed number of them.
+ *
+ *  The cache is divided into STRIPES stripes, each with its own lock, so
+ *  that threads using different stripes do not wait for each other.  A
+ *  key's stripe is chosen by a hash of the key, and each stripe holds a
+ *  fixed number of blocks in parallel arrays of keys, blocks, and times
+ *  of last use, searched linearly.  When a stripe is full, a new block
+ *  replaces its least recently used one.  Keys are never boxed.
+ *  @author andrew
+ */
+class BlockCache {
+
+    /** Number of stripes. */
+    static final int STRIPES = 16;
+
+    /** A cache holding up to CAPACITY blocks, rounded up to a multiple
+     *  of STRIPES. */
+    BlockCache(int capacity) {
+        int ways = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+        for (int s = 0; s < STRIPES; s += 1) {
+            _stripes[s] = new Stripe(ways);
+        }
+        _capacity = ways * STRIPES;
+    }
+
+    /** Return the block with key KEY, or null if it is not cached.
+     *  The block is then the most recently used of its stripe. */
+    byte[] get(long key) {
+        return stripe(key).get(key);
+    }
+
+    /** Cache BLOCK under KEY, discarding the least recently used block
+     *  of its stripe if that is full.  BLOCK must not be modified
+     *  afterwards. */
+    void put(long key, byte[] block) {
+        stripe(key).put(key, block);
+    }
+
+    /** Return the number of blocks I hold. */
+    int size() {
+        int result;
+        result = 0;
+        for (Stripe stripe : _stripes) {
+            result += stripe.size();
+        }
+        return result;
+    }
+
+    /** Return the maximum number of blocks I hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the stripe holding KEY. */
+    private Stripe stripe(long key) {
+        return _stripes[(int) ((key * HASH) >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    /** The blocks of one stripe, and its lock. */
+    private static class Stripe {
+
+        /** A stripe holding up to WAYS blocks. */
+        Stripe(int ways) {
+            _keys = new long[ways];
+            _blocks = new byte[ways][];
+            _used = new long[ways];
+        }
+
+        /** As for BlockCache.get(KEY). */
+        synchronized byte[] get(long key) {
+            int k = find(key);
+            if (k < 0) {
+                return null;
+            }
+            _clock += 1;
+            _used[k] = _clock;
+            return _blocks[k];
+        }
+
+        /** As for BlockCache.put(KEY, BLOCK). */
+        synchronized void put(long key, byte[] block) {
+            int k = find(key);
+            if (k < 0 && _size < _keys.length) {
+                k = _size;
+                _size += 1;
+            } else if (k < 0) {
+                k = 0;
+                for (int j = 1; j < _size; j += 1) {
+                    if (_used[j] < _used[k]) {
+                        k = j;
+                    }
+                }
+            }
+            _clock += 1;
+            _keys[k] = key;
+            _blocks[k] = block;
+            _used[k] = _clock;
+        }
+
+        /** Return the number of blocks I hold. */
+        synchronized int size() {
+            return _size;
+        }
+
+        /** Return the index of KEY in _keys, or -1 if I do not hold
+         *  it. */
+        private int find(long key) {
+            for (int k = 0; k < _size; k += 1) {
+                if (_keys[k] == key) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        /** _keys[K], _blocks[K], and _used[K] are the key of my Kth
+         *  block, the block, and the value of _clock at its last use, for
+         *  0 <= K < _size. */
+        private final long[] _keys;
+        /** See _keys. */
+        private final byte[][] _blocks;
+        /** See _keys. */
+        private final long[] _used;
+        /** Number of blocks held. */
+        private int _size;
+        /** Number of uses of my blocks so far. */
+        private long _clock;
+    }
+
+    /** log2(STRIPES). */
+    private static final int STRIPE_BITS =
+        Integer.numberOfTrailingZeros(STRIPES);
+
+    /** Multiplier that spreads keys differing only in their low bits
+     *  over the stripes (the golden ratio times 2 to the 64). */
+    private static final long HASH = 0x9e3779b97f4a7c15L;
+
+    /** The stripes. */
+    private final Stripe[] _stripes = new Stripe[STRIPES];
+    /** Maximum number of blocks held. */
+    private final int _capacity;
+
+}
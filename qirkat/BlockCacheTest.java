@@ -0,0 +1,98 @@
+package qirkat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of BlockCache.
+ *  @author andrew
+ */
+public class BlockCacheTest {
+
+    /** Return the key of block B of the file with identifier ID, as
+     *  formed by TablebaseFile. */
+    private static long key(int id, int b) {
+        return (long) id << 32 | b;
+    }
+
+    /** Return the block cached under KEY by the tests. */
+    private static byte[] block(long key) {
+        byte[] result = new byte[Long.BYTES];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = (byte) (key >>> (8 * k));
+        }
+        return result;
+    }
+
+    @Test
+    public void testGetAndPut() {
+        BlockCache cache = new BlockCache(64);
+        assertEquals(64, cache.capacity());
+        assertNull(cache.get(key(1, 0)));
+        byte[] first = block(key(1, 0)), second = block(key(2, 0));
+        cache.put(key(1, 0), first);
+        cache.put(key(2, 0), second);
+        assertSame(first, cache.get(key(1, 0)));
+        assertSame(second, cache.get(key(2, 0)));
+        assertNull(cache.get(key(1, 1)));
+        cache.put(key(1, 0), second);
+        assertSame(second, cache.get(key(1, 0)));
+        assertEquals(2, cache.size());
+        assertEquals(BlockCache.STRIPES, new BlockCache(1).capacity());
+    }
+
+    /** A block used between every two others that are cached stays,
+     *  while the cache holds no more than its capacity. */
+    @Test
+    public void testEviction() {
+        BlockCache cache = new BlockCache(2 * BlockCache.STRIPES);
+        byte[] kept = block(key(1, 0));
+        cache.put(key(1, 0), kept);
+        for (int b = 1; b < 1000; b += 1) {
+            cache.put(key(1, b), block(key(1, b)));
+            assertSame(kept, cache.get(key(1, 0)));
+            assertNotNull(cache.get(key(1, b)));
+            assertTrue(cache.size() <= cache.capacity());
+        }
+        assertEquals(cache.capacity(), cache.size());
+    }
+
+    /** Several threads probe a cache for more blocks than it holds,
+     *  half the time for one of a few often used ones, caching those
+     *  that are missing, as TablebaseFile does.  Every
+     *  block found must be the one cached under the key probed. */
+    @Test
+    public void testConcurrentProbes() throws InterruptedException {
+        BlockCache cache = new BlockCache(64);
+        AtomicInteger hits = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] probers = new Thread[4];
+        for (int t = 0; t < probers.length; t += 1) {
+            int seed = t;
+            probers[t] = new Thread(() -> {
+                for (int n = 0; n < 200000; n += 1) {
+                    int b = n % 2 == 0 ? n % 16 : (n * 7 + seed * 13) % 256;
+                    long key = key(1 + b % 3, b);
+                    byte[] block = cache.get(key);
+                    if (block == null) {
+                        cache.put(key, block(key));
+                    } else if (!Arrays.equals(block, block(key))) {
+                        errors.incrementAndGet();
+                    } else {
+                        hits.incrementAndGet();
+                    }
+                }
+            });
+            probers[t].start();
+        }
+        for (Thread prober : probers) {
+            prober.join();
+        }
+        assertEquals(0, errors.get());
+        assertTrue(hits.get() > 0);
+        assertTrue(cache.size() <= cache.capacity());
+    }
+
+}
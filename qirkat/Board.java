@@ -4,7 +4,8 @@ import java.util.ArrayList;
 import java.util.Observable;
 import java.util.HashMap;
 import java.util.Formatter;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Observer;
 
 import static qirkat.PieceColor.*;
@@ -22,31 +23,51 @@ import static qirkat.Move.*;
  *  @author andrew
  */
 class Board extends Observable {
-    /**Board.*/
-    private HashMap<String, PieceColor> _board;
+    /** Occupancy masks: bit K of _white (resp. _black) is set iff the
+     *  square with linearized index K holds a white (resp. black) piece. */
+    private int _white, _black;
+
+    /** A HashMap view of the board keyed by square name ("c3"), built on
+     *  demand by board() and discarded (set to null) whenever the position
+     *  changes.  Only display and setup code should need it. */
+    private HashMap<String, PieceColor> _view;
+
+    /** The set of squares from which the player to move can capture, as
+     *  a mask in the format of pieces(), or UNKNOWN if it has not been
+     *  computed since the position last changed (see jumpers()). */
+    private int _jumpers;
+
+    /** The evaluator whose piece values I maintain (see pieceValues()). */
+    private Evaluator _evaluator = Evaluator.MATERIAL;
+    /** _pieceValues[C * (MAX_INDEX + 1) + K] is _evaluator.pieceValue for
+     *  a piece whose color has ordinal C on square K.  Shared by copies,
+     *  and never modified. */
+    private int[] _pieceValues = MATERIAL_VALUES;
+    /** The sum of _evaluator.pieceValue over my pieces. */
+    private int _value;
+
     /**Return board hashmap.*/
     public HashMap<String, PieceColor> getBoard() {
-        return this._board;
+        return board();
     }
-    /**Return Hashmap board.*/
+    /**Return Hashmap board.  The result is a snapshot: it is rebuilt after
+     * any change to me, and changes to it do not affect me. */
     public HashMap<String, PieceColor> board() {
-        return this._board;
+        if (_view == null) {
+            _view = new HashMap<String, PieceColor>();
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                _view.put(linToHash(k), get(k));
+            }
+        }
+        return _view;
     }
     /**Return the K th hash.*/
     static String linToHash(int k) {
-        for (char c = 'a'; c <= 'e'; c++) {
-            for (char r = '1'; r <= '5'; r++) {
-                if (index(c, r) == k) {
-                    return Character.toString(c) + Character.toString(r);
-                }
-            }
-        }
-        return "LINTOHASH ERROR";
+        return Character.toString(col(k)) + Character.toString(row(k));
     }
 
     /** A new, cleared board at the start of the game. */
     Board() {
-        _board = new HashMap<String, PieceColor>();
         clear();
     }
 
@@ -74,31 +95,26 @@ class Board extends Observable {
     }
     /**create starterboard.*/
     void starterBoard() {
-        _board.clear();
-        String key;
-
-        PieceColor white = PIECE_VALUES[1];
+        _white = _black = 0;
         for (char c = 'a'; c <= 'e'; c++) {
             for (char r = '1'; r <= '2'; r++) {
-                key = Character.toString(c) + Character.toString(r);
-                _board.put(key, white);
+                _white |= 1 << index(c, r);
             }
         }
-        _board.put("d3", white);
-        _board.put("e3", white);
+        _white |= (1 << index('d', '3')) | (1 << index('e', '3'));
 
-        PieceColor black = PIECE_VALUES[2];
         for (char c = 'a'; c <= 'e'; c++) {
             for (char r = '4'; r <= '5'; r++) {
-                key = Character.toString(c) + Character.toString(r);
-                _board.put(key, black);
+                _black |= 1 << index(c, r);
             }
         }
-        _board.put("a3", black);
-        _board.put("b3", black);
+        _black |= (1 << index('a', '3')) | (1 << index('b', '3'));
 
-        PieceColor empty = PIECE_VALUES[0];
-        _board.put("c3", empty);
+        Arrays.fill(oldMoves, Geometry.NO_SQUARE);
+        _undoTop = 0;
+        invalidate();
+        _key = computeKey();
+        _value = computeValue(_pieceValues);
     }
 
     /** Copy B into me. */
@@ -109,7 +125,10 @@ class Board extends Observable {
     /** Copy B into me. */
     private void internalCopy(Board b) {
 
-        _board = new HashMap<String, PieceColor>(b._board);
+        _white = b._white;
+        _black = b._black;
+        invalidate();
+        _jumpers = b._jumpers;
         _whoseMove = b._whoseMove;
         if (_whoseMove == PIECE_VALUES[0]) {
             _whoseMove = PIECE_VALUES[0];
@@ -121,7 +140,11 @@ class Board extends Observable {
             _whoseMove = PIECE_VALUES[2];
         }
         _gameOver = b._gameOver;
-        oldMoves = b.oldMoves;
+        oldMoves = b.oldMoves.clone();
+        _key = b._key;
+        _evaluator = b._evaluator;
+        _pieceValues = b._pieceValues;
+        _value = b._value;
     }
 
     /** Set my contents as defined by STR.  STR consists of 25 characters,
@@ -160,11 +183,44 @@ class Board extends Observable {
 
 
         _whoseMove = nextMove;
+        invalidate();
+        Arrays.fill(oldMoves, Geometry.NO_SQUARE);
+        _undoTop = 0;
+        _key = computeKey();
 
         setChanged();
         notifyObservers();
     }
 
+    /** Set my contents to WHITE's pieces on the squares in the mask WHITE
+     *  and BLACK's on those in BLACK (which must be disjoint), with no
+     *  restrictions on horizontal moves, and NEXTMOVE to move.  Like
+     *  setPieces, but faster, for use in bulk computations. */
+    void setPosition(int white, int black, PieceColor nextMove) {
+        assert (white & black) == 0 && nextMove.isPiece();
+        _white = white;
+        _black = black;
+        _whoseMove = nextMove;
+        invalidate();
+        Arrays.fill(oldMoves, Geometry.NO_SQUARE);
+        _undoTop = 0;
+        _key = computeKey();
+        _value = computeValue(_pieceValues);
+        announce();
+    }
+
+    /** Return true iff some piece may not move back horizontally to the
+     *  square it came from (see oldMoves). */
+    boolean restricted() {
+        for (int p = _white | _black; p != 0; p &= p - 1) {
+            if (oldMoves[Integer.numberOfTrailingZeros(p)]
+                != Geometry.NO_SQUARE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Return true iff the game is over: i.e., if the current player has
      *  no moves. */
     boolean gameOver() {
@@ -176,26 +232,39 @@ class Board extends Observable {
     PieceColor get(char c, char r) {
         assert validSquare(c, r);
 
-        return _board.get(Character.toString(c) + Character.toString(r));
+        return get(index(c, r));
     }
 
     /** Return the current contents of the square at linearized index K. */
     PieceColor get(int k) {
         assert validSquare(k);
 
-        String pos = linToHash(k);
-        char c = pos.charAt(0);
-        char r = pos.charAt(1);
-        return get(c, r);
+        if ((_white & (1 << k)) != 0) {
+            return WHITE;
+        } else if ((_black & (1 << k)) != 0) {
+            return BLACK;
+        }
+        return EMPTY;
+    }
 
+    /** Return the set of squares occupied by pieces of color COLOR, as a
+     *  mask whose bit K is set iff get(K) == COLOR.  COLOR must be WHITE
+     *  or BLACK. */
+    int pieces(PieceColor color) {
+        return color == WHITE ? _white : _black;
+    }
+
+    /** Return the set of empty squares, as a mask in the format of
+     *  pieces(). */
+    int emptySquares() {
+        return ~(_white | _black) & ALL_SQUARES;
     }
 
     /** Set get(C, R) to V, where 'a' <= C <= 'e', and
      *  '1' <= R <= '5'. */
     private void set(char c, char r, PieceColor v) {
         assert validSquare(c, r);
-        String pos = Character.toString(c) + Character.toString(r);
-        _board.put(pos, v);
+        set(index(c, r), v);
 
     }
 
@@ -203,12 +272,22 @@ class Board extends Observable {
     private void set(int k, PieceColor v) {
         assert validSquare(k);
 
-        String pos = linToHash(k);
-        char c = pos.charAt(0);
-        char r = pos.charAt(1);
-        set(c, r, v);
-
-
+        int bit = 1 << k;
+        PieceColor old = get(k);
+        if (old != EMPTY) {
+            _value -= _pieceValues[pieceIndex(old, k)];
+        }
+        if (v != EMPTY) {
+            _value += _pieceValues[pieceIndex(v, k)];
+        }
+        _white &= ~bit;
+        _black &= ~bit;
+        if (v == WHITE) {
+            _white |= bit;
+        } else if (v == BLACK) {
+            _black |= bit;
+        }
+        invalidate();
     }
 
 
@@ -216,68 +295,147 @@ class Board extends Observable {
     /** Return a list of all legal moves from the current position. */
     ArrayList<Move> getMoves() {
         ArrayList<Move> result = new ArrayList<>();
-        ArrayList<Move> temp = new ArrayList<>();
-        getMoves(temp);
-        for (Move m : temp) {
-            if (legalMove(m)) {
-                result.add(m);
-            }
-        }
+        getMoves(result);
         return result;
     }
 
     /** Add all legal moves (move and jumps) from the current position to
      * MOVES. */
     void getMoves(ArrayList<Move> moves) {
-        if (gameOver()) {
+        long[] codes = new long[TYPICAL_MOVES];
+        int n = getMoves(codes, 0);
+        if (n > codes.length) {
+            codes = new long[n];
+            getMoves(codes, 0);
+        }
+        addMoves(moves, codes, n);
+    }
 
-            return;
+    /** Store the codes (see MoveCode) of all legal moves from the current
+     *  position in MOVES[START], MOVES[START + 1], ..., and return the
+     *  index just past the last.  If that exceeds MOVES.length, MOVES
+     *  was too small, and only the codes that fit were stored: the
+     *  caller must make room for all of them (see reserve) and call
+     *  again.  This is the move generator used by the AI, and creates no
+     *  objects.  The order of the moves is that of getMoves(). */
+    int getMoves(long[] moves, int start) {
+        if (gameOver()) {
+            return start;
         }
+        int n;
+        n = start;
         if (jumpPossible()) {
-
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getJumps(moves, k);
+            for (int mine = jumpers(); mine != 0; mine &= mine - 1) {
+                n = addJumps(moves, n, Integer.numberOfTrailingZeros(mine));
             }
         } else {
-
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getMoves(moves, k);
+            for (int mine = pieces(_whoseMove); mine != 0;
+                 mine &= mine - 1) {
+                n = addSteps(moves, n, Integer.numberOfTrailingZeros(mine));
             }
         }
+        return n;
     }
 
+    /** Return MOVES if it has room for N codes, and otherwise a copy of
+     *  it with room for at least N. */
+    static long[] reserve(long[] moves, int n) {
+        if (n <= moves.length) {
+            return moves;
+        }
+        return Arrays.copyOf(moves, Math.max(n, 2 * moves.length));
+    }
 
     /** Add all legal non-capturing moves from the position
      *  with linearized index K to MOVES. */
     void getMoves(ArrayList<Move> moves, int k) {
-        Move.cleanGetMovesHelper(moves, k, this);
-
+        long[] codes = new long[TYPICAL_MOVES];
+        addMoves(moves, codes, addSteps(codes, 0, k));
     }
 
     /** Add all legal captures from the position with linearized index K
      *  to MOVES. */
     void getJumps(ArrayList<Move> moves, int k) {
+        long[] codes = new long[TYPICAL_MOVES];
+        int n = addJumps(codes, 0, k);
+        if (n > codes.length) {
+            codes = new long[n];
+            addJumps(codes, 0, k);
+        }
+        addMoves(moves, codes, n);
+    }
 
+    /** Add the Moves whose codes are CODES[0 .. N-1] to MOVES. */
+    private static void addMoves(ArrayList<Move> moves, long[] codes,
+                                 int n) {
+        for (int i = 0; i < n; i += 1) {
+            moves.add(MoveCode.toMove(codes[i]));
+        }
+    }
 
-
-        ArrayList<Move> temp = new ArrayList<Move>();
-
-        Move.finalChainJump(temp, this, k);
-        for (Move m : temp) {
-            if (legalMove(m)) {
-                moves.add(m);
+    /** Store the codes of the legal non-capturing moves from square K in
+     *  MOVES[N], MOVES[N + 1], ..., and return the index just past the
+     *  last, storing only those that fit, as for getMoves(long[], int). */
+    private int addSteps(long[] moves, int n, int k) {
+        if ((pieces(_whoseMove) & (1 << k)) == 0) {
+            return n;
+        }
+        int empty = emptySquares();
+        for (int to : Geometry.steps(_whoseMove, k)) {
+            if ((empty & (1 << to)) != 0 && oldMoves[k] != to) {
+                if (n < moves.length) {
+                    moves[n] = MoveCode.step(k, to);
+                }
+                n += 1;
             }
         }
-
+        return n;
     }
 
+    /** Store the codes of the legal captures from square K in MOVES[N],
+     *  MOVES[N + 1], ..., and return the index just past the last,
+     *  storing only those that fit, as for getMoves(long[], int).  These
+     *  are the jump sequences from K that cannot be extended, found by a
+     *  depth-first search that tracks captures in bitmasks rather than
+     *  by modifying the board. */
+    private int addJumps(long[] moves, int n, int k) {
+        if (!jumpPossible(k)) {
+            return n;
+        }
+        return addJumps(moves, n, k, MoveCode.NONE,
+                        pieces(_whoseMove.opposite()),
+                        emptySquares() | (1 << k));
+    }
 
-
-    /** Add all legal single captures from the position with linearized index K
-     *  to MOVES. */
-    void getSingleJump(ArrayList<Move> moves, int k) {
-        Move.cleanGetSingleJumpHelper(moves, k, this);
-
+    /** Store the codes of all maximal jump sequences that begin with the
+     *  jumps in CODE (NONE for none), which end on K, in MOVES[N],
+     *  MOVES[N + 1], ..., and return the index just past the last,
+     *  storing only those that fit, as for getMoves(long[], int).
+     *  After CODE, the squares holding uncaptured opposing pieces are
+     *  OPPONENTS, and those that may be landed on are EMPTY.  As in
+     *  checkJump, each captured piece is removed as it is jumped, and
+     *  the moving piece's starting square counts as empty. */
+    private int addJumps(long[] moves, int n, int k, long code,
+                         int opponents, int empty) {
+        int[] over = Geometry.JUMP_OVER[k], to = Geometry.JUMP_TO[k];
+        boolean extended;
+        extended = false;
+        for (int i = 0; i < over.length; i += 1) {
+            if ((opponents & (1 << over[i])) != 0
+                && (empty & (1 << to[i])) != 0) {
+                extended = true;
+                n = addJumps(moves, n, to[i], MoveCode.extend(code, k, i),
+                             opponents & ~(1 << over[i]),
+                             empty | (1 << over[i]));
+            }
+        }
+        if (!extended && code != MoveCode.NONE) {
+            if (n < moves.length) {
+                moves[n] = code;
+            }
+            n += 1;
+        }
+        return n;
     }
 
     /** Return true iff MOV is a valid jump sequence on the current board.
@@ -287,7 +445,25 @@ class Board extends Observable {
         if (mov == null) {
             return true;
         }
-        return false;
+        int k = mov.fromIndex();
+        if ((pieces(_whoseMove) & (1 << k)) == 0) {
+            return false;
+        }
+        int opponents = pieces(_whoseMove.opposite());
+        int empty = emptySquares() | (1 << k);
+        for (Move leg = mov; leg != null; leg = leg.jumpTail()) {
+            int over = Geometry.JUMPED[k][leg.toIndex()];
+            if (!leg.isJump() || leg.fromIndex() != k
+                || over == Geometry.NO_SQUARE
+                || (opponents & (1 << over)) == 0
+                || (empty & (1 << leg.toIndex())) == 0) {
+                return false;
+            }
+            opponents &= ~(1 << over);
+            empty |= 1 << over;
+            k = leg.toIndex();
+        }
+        return allowPartial || !Geometry.canJump(k, opponents, empty);
     }
 
     /** Return true iff a jump is possible for a piece at position C R. */
@@ -298,19 +474,38 @@ class Board extends Observable {
     /** Return true iff a jump is possible for a piece at position with
      *  linearized index K. */
     boolean jumpPossible(int k) {
-        ArrayList<Move> allJumps = new ArrayList<Move>();
-        getSingleJump(allJumps, k);
-        return allJumps.size() > 0;
+        return (jumpers() & (1 << k)) != 0;
     }
 
     /** Return true iff a jump is possible from the current board. */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
-                return true;
+        return jumpers() != 0;
+    }
+
+    /** Return the set of squares holding pieces of the player to move
+     *  that can capture, as a mask in the format of pieces().  The result
+     *  is computed once per position. */
+    int jumpers() {
+        if (_jumpers == UNKNOWN) {
+            int opponents = pieces(_whoseMove.opposite());
+            int empty = emptySquares();
+            _jumpers = 0;
+            for (int mine = pieces(_whoseMove); mine != 0;
+                 mine &= mine - 1) {
+                int k = Integer.numberOfTrailingZeros(mine);
+                if (Geometry.canJump(k, opponents, empty)) {
+                    _jumpers |= 1 << k;
+                }
             }
         }
-        return false;
+        return _jumpers;
+    }
+
+    /** Discard the information cached about my position, which has
+     *  changed. */
+    private void invalidate() {
+        _view = null;
+        _jumpers = UNKNOWN;
     }
     /**Helper Return if move possible from K.*/
     boolean movePossible(int k) {
@@ -349,248 +544,259 @@ class Board extends Observable {
     void makeMove(Move mov) {
         assert legalMove(mov);
 
-        HashMap<String, PieceColor> temp =
-                new HashMap<String, PieceColor>(_board);
-        tempBoard.add(temp);
-
-        actuallyMakeMove(mov);
-        _whoseMove = _whoseMove.opposite();
-
+        makeMove(mov.fromIndex(), mov.finalIndex(), mov.captures(),
+                 mov.isLeftMove() || mov.isRightMove());
+    }
 
-        setChanged();
-        notifyObservers();
+    /** Make the move whose code (see MoveCode) is CODE on this Board,
+     *  assuming it is legal (as are all moves from getMoves). */
+    void makeMove(long code) {
+        int from = MoveCode.from(code), to = MoveCode.to(code);
+        makeMove(from, to, MoveCode.captures(code),
+                 !MoveCode.isJump(code)
+                 && Geometry.rowNum(from) == Geometry.rowNum(to));
     }
-    /**OldMoves.*/
-    private HashMap<String, String> oldMoves = new HashMap<String, String>();
-    /**Actually make the MOV move.*/
-    void actuallyMakeMove(Move mov) {
-        char startCol = mov.col0();
-        char startRow = mov.row0();
-        char endCol = mov.col1();
-        char endRow = mov.row1();
-        String start =
-                Character.toString(startCol) + Character.toString(startRow);
-        String end = Character.toString(endCol) + Character.toString(endRow);
-
-        PieceColor curr = _board.get(start);
-        _board.put(start, PIECE_VALUES[0]);
-        oldMoves.remove(start);
-        if (!mov.isJump()) {
-            _board.put(end, curr);
 
-            oldMoves.put(end, start);
+    /** Move the piece of the player to move from FROM to TO, capturing
+     *  the pieces in the mask CAPTURED, where HORIZONTAL indicates a
+     *  horizontal non-capturing move, and record the move for undo(). */
+    private void makeMove(int from, int to, int captured,
+                          boolean horizontal) {
+        captured &= pieces(_whoseMove.opposite());
+        if (_undoTop == _undoStack.length) {
+            _undoStack = Arrays.copyOf(_undoStack, 2 * _undoTop);
+        }
+        _undoStack[_undoTop] =
+            undoRecord(from, to, captured, _whoseMove, oldMoves[to]);
+        _undoTop += 1;
+
+        int moved = (1 << from) ^ (1 << to);
+        if (_whoseMove == WHITE) {
+            _white ^= moved;
+            _black &= ~captured;
         } else {
-            char middleCol = middleChar(startCol, endCol);
-            char middleRow = middleChar(startRow, endRow);
-            String middle = Character.toString(middleCol)
-                    + Character.toString(middleRow);
-            _board.put(middle, PIECE_VALUES[0]);
-            _board.put(end, curr);
-            if (mov.jumpTail() != null) {
-                actuallyMakeMove(mov.jumpTail());
+            _black ^= moved;
+            _white &= ~captured;
+        }
+        _key ^= movedKey(_whoseMove, from, to, captured);
+        _value += movedValue(_whoseMove, from, to, captured);
+        invalidate();
+        oldMoves[to] = horizontal ? from : Geometry.NO_SQUARE;
+        _key ^= oldMoveKey(to);
 
+        _whoseMove = _whoseMove.opposite();
+        _key ^= ZOBRIST_SIDE;
+        assert _key == computeKey();
+        assert _value == computeValue(_pieceValues);
 
-            }
+        announce();
+    }
+    /**OldMoves: oldMoves[K] is the linearized index of the square from
+     * which the piece on K made its last move, if that move was
+     * horizontal, and otherwise Geometry.NO_SQUARE.  A piece may not step
+     * straight back to that square.  Entries for empty squares are
+     * meaningless; each move sets the entry for the square it ends on.*/
+    private int[] oldMoves = new int[MAX_INDEX + 1];
+
+    /** Return the change in my Zobrist key due to a piece of color MOVER
+     *  moving from square FROM to square TO and capturing the pieces in
+     *  the mask CAPTURED, excluding the contribution of oldMoves[TO].
+     *  The oldMoves entries of the squares involved must have their
+     *  values from before the move. */
+    private long movedKey(PieceColor mover, int from, int to, int captured) {
+        long[] mine = ZOBRIST_PIECES[mover.ordinal()],
+            theirs = ZOBRIST_PIECES[mover.opposite().ordinal()];
+        long delta = mine[from] ^ mine[to] ^ oldMoveKey(from);
+        for (; captured != 0; captured &= captured - 1) {
+            int k = Integer.numberOfTrailingZeros(captured);
+            delta ^= theirs[k] ^ oldMoveKey(k);
         }
-
+        return delta;
     }
 
-    /**Temp board.*/
-    private ArrayList<HashMap<String, PieceColor>> tempBoard =
-            new ArrayList<HashMap<String, PieceColor>>();
+    /** Return the Zobrist key for oldMoves[K], assuming square K is
+     *  occupied: 0 if the piece there has no restriction. */
+    private long oldMoveKey(int k) {
+        int from = oldMoves[k];
+        return from == Geometry.NO_SQUARE ? 0 : ZOBRIST_OLD_MOVES[k][from];
+    }
 
-    /** Undo the last move, if any. */
-    void undo() {
-        if (tempBoard.size() == 0) {
-            return;
+    /** Return my Zobrist key computed from scratch. */
+    private long computeKey() {
+        long key = _whoseMove == BLACK ? ZOBRIST_SIDE : 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            PieceColor p = get(k);
+            if (p != EMPTY) {
+                key ^= ZOBRIST_PIECES[p.ordinal()][k] ^ oldMoveKey(k);
+            }
         }
-        _board = tempBoard.remove(tempBoard.size() - 1);
-
-        _whoseMove = _whoseMove.opposite();
-
-        setChanged();
-        notifyObservers();
+        return key;
     }
-    /**Temp MOV Return.*/
-    boolean legalMoved(Move mov) {
-        return getMoves().contains(mov);
 
+    /** Return a 64-bit Zobrist hash of my position: the pieces, the side
+     *  to move, and the horizontal-move restrictions in oldMoves.  It is
+     *  maintained incrementally by makeMove and undo, and two Boards that
+     *  are equal have the same key. */
+    long key() {
+        return _key;
     }
-    /** Return true iff MOV is legal on the current board. */
-    boolean legalMove(Move mov) {
-
 
-        if (mov == null) {
-            return true;
+    /** Maintain the piece values of EVALUATOR from now on (see
+     *  pieceValues()). */
+    void setEvaluator(Evaluator evaluator) {
+        if (evaluator != _evaluator) {
+            _evaluator = evaluator;
+            _pieceValues = tabulate(evaluator);
+            _value = computeValue(_pieceValues);
         }
-        char startCol = mov.col0();
-        char startRow = mov.row0();
-        String start = Character.toString(startCol)
-                + Character.toString(startRow);
-        if (!_board.containsKey(start)) {
-            return false;
-        }
-        if (!get(startCol, startRow).equals(_whoseMove)) {
-            return false;
-        }
-        char endCol = mov.col1();
-        char endRow = mov.row1();
-        String end = Character.toString(endCol)
-                + Character.toString(endRow);
-        if (!_board.containsKey(end)) {
-            return false;
-        }
-        if (!get(endCol, endRow).equals(PIECE_VALUES[0])) {
+    }
 
-            return false;
+    /** Return the sum of EVALUATOR.pieceValue over my pieces.  This takes
+     *  constant time if EVALUATOR was the last argument to setEvaluator
+     *  (or is Evaluator.MATERIAL and there was none), since makeMove and
+     *  undo keep the sum up to date. */
+    int pieceValues(Evaluator evaluator) {
+        if (evaluator == _evaluator) {
+            return _value;
         }
-        if (startCol == endCol && startRow == endRow) {
+        return computeValue(tabulate(evaluator));
+    }
 
-            return false;
+    /** Return the change in the sum of the piece values VALUES (in the
+     *  format of _pieceValues) due to a piece of color MOVER moving from
+     *  square FROM to square TO and capturing the pieces in the mask
+     *  CAPTURED. */
+    private int movedValue(PieceColor mover, int from, int to,
+                           int captured) {
+        PieceColor other = mover.opposite();
+        int delta = _pieceValues[pieceIndex(mover, to)]
+            - _pieceValues[pieceIndex(mover, from)];
+        for (; captured != 0; captured &= captured - 1) {
+            int k = Integer.numberOfTrailingZeros(captured);
+            delta -= _pieceValues[pieceIndex(other, k)];
         }
-        if (!mov.isJump()) {
-            if (jumpPossible()) {
-                return false;
-            }
-            return notJumpHelper(mov);
-        } else {
-            if (mov.jumpTail() == null) {
-
-                return singleJumpHelper(mov);
-            } else {
-
+        return delta;
+    }
 
-                HashMap<String, PieceColor> temp =
-                        new HashMap<String, PieceColor>(_board);
-                return chainJumpHelper(mov, temp);
+    /** Return the sum of the piece values VALUES (in the format of
+     *  _pieceValues) over my pieces, computed from scratch. */
+    private int computeValue(int[] values) {
+        int sum;
+        sum = 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            PieceColor p = get(k);
+            if (p != EMPTY) {
+                sum += values[pieceIndex(p, k)];
             }
         }
+        return sum;
     }
-    /**Return MOV TMPBOARD HELPER.*/
-    boolean chainJumpHelper(Move mov, HashMap<String, PieceColor> tmpBoard) {
-        if (mov.jumpTail() == null) {
 
-            return singleJumpHelper(mov);
-        }
-        if (!singleJumpHelper(mov)) {
-            return false;
+    /** Return the piece values of EVALUATOR in the format of
+     *  _pieceValues. */
+    private static int[] tabulate(Evaluator evaluator) {
+        int[] values = new int[PIECE_VALUES.length * (MAX_INDEX + 1)];
+        for (PieceColor color : new PieceColor[] { WHITE, BLACK }) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                values[pieceIndex(color, k)] =
+                    evaluator.pieceValue(color, k);
+            }
         }
-        char startCol = mov.col0();
-
-        char startRow = mov.row0();
-
-        char endCol = mov.col1();
+        return values;
+    }
 
-        char endRow = mov.row1();
+    /** Return the index in _pieceValues for a piece of color COLOR on
+     *  square K. */
+    private static int pieceIndex(PieceColor color, int k) {
+        return color.ordinal() * (MAX_INDEX + 1) + k;
+    }
 
+    /** Return an undo record for a move by SIDE from square FROM to square
+     *  TO capturing the pieces in the mask CAPTURED, where OLDTO was
+     *  oldMoves[TO] before the move. */
+    private static long undoRecord(int from, int to, int captured,
+                                   PieceColor side, int oldTo) {
+        return from | ((long) to << UNDO_TO)
+            | ((long) captured << UNDO_CAPTURED)
+            | ((long) side.ordinal() << UNDO_SIDE)
+            | ((long) (oldTo + 1) << UNDO_OLD_MOVE);
+    }
 
-        String start = Character.toString(startCol)
-                + Character.toString(startRow);
-        String end = Character.toString(endCol) + Character.toString(endRow);
-        PieceColor curr = tmpBoard.get(start);
-        tmpBoard.put(start, PIECE_VALUES[0]);
+    /** Records of the moves made by makeMove and not yet undone, in the
+     *  format produced by undoRecord.  The first _undoTop entries are in
+     *  use. */
+    private long[] _undoStack = new long[INITIAL_UNDO_SIZE];
+    /** Number of entries in use in _undoStack. */
+    private int _undoTop;
 
-        if (!mov.isJump()) {
-            tmpBoard.put(end, curr);
-            return false;
+    /** Undo the last move, if any. */
+    void undo() {
+        if (_undoTop == 0) {
+            return;
+        }
+        _undoTop -= 1;
+        long rec = _undoStack[_undoTop];
+        int from = (int) rec & SQUARE_BITS,
+            to = (int) (rec >>> UNDO_TO) & SQUARE_BITS,
+            captured = (int) (rec >>> UNDO_CAPTURED) & ALL_SQUARES;
+        int moved = (1 << from) ^ (1 << to);
+        PieceColor side = PIECE_VALUES[(int) (rec >>> UNDO_SIDE) & 3];
+        if (side == WHITE) {
+            _white ^= moved;
+            _black |= captured;
         } else {
-            char middleCol = middleChar(startCol, endCol);
-            char middleRow = middleChar(startRow, endRow);
-            String middle = Character.toString(middleCol)
-                    + Character.toString(middleRow);
-            tmpBoard.put(middle, PIECE_VALUES[0]);
-            tmpBoard.put(end, curr);
+            _black ^= moved;
+            _white |= captured;
         }
+        _key ^= oldMoveKey(to);
+        oldMoves[to] = (int) (rec >>> UNDO_OLD_MOVE) - 1;
+        _key ^= movedKey(side, from, to, captured) ^ ZOBRIST_SIDE;
+        _value -= movedValue(side, from, to, captured);
+        invalidate();
 
-        return chainJumpHelper(mov.jumpTail(), tmpBoard);
+        _whoseMove = side;
+        assert _key == computeKey();
+        assert _value == computeValue(_pieceValues);
 
+        announce();
     }
-    /**MOV RETURN HELPER SINGLE JUMP.*/
-    boolean singleJumpHelper(Move mov) {
-        char startCol = mov.col0();
-
-        char startRow = mov.row0();
-
-        char endCol = mov.col1();
 
-        char endRow = mov.row1();
-
-
-        if (!mov.isJump()) {
-            return false;
+    /** Notify my observers, if there are any, that I have changed.  The
+     *  search makes and undoes moves on boards that nobody observes, and
+     *  this avoids the cost of Observable.notifyObservers for them. */
+    private void announce() {
+        if (countObservers() > 0) {
+            setChanged();
+            notifyObservers();
         }
+    }
+    /**Temp MOV Return.*/
+    boolean legalMoved(Move mov) {
+        return getMoves().contains(mov);
 
-        if (!((Math.abs(startCol - endCol) == 2
-                || Math.abs(startCol - endCol) == 0)
-                && (Math.abs(startRow - endRow) == 2
-                || Math.abs(startRow - endRow) == 0))) {
-            return false;
+    }
+    /** Return true iff MOV is legal on the current board. */
+    boolean legalMove(Move mov) {
+        if (mov == null) {
+            return true;
         }
-
-        Board temp = new Board(this);
-
-        temp.actuallyMakeMove(mov);
-
-
-        if (temp.jumpPossible(endCol, endRow)) {
-
+        if ((pieces(_whoseMove) & (1 << mov.fromIndex())) == 0
+            || (emptySquares() & (1 << mov.toIndex())) == 0) {
             return false;
         }
-
-
-        if (!((Math.abs(startCol - endCol) == 2)
-                && (Math.abs(startRow - endRow) == 2))) {
-            char middleCol = middleChar(startCol, endCol);
-            char middleRow = middleChar(startRow, endRow);
-            return get(middleCol, middleRow).equals(_whoseMove.opposite());
-
-
-
+        if (!mov.isJump()) {
+            return !jumpPossible() && notJumpHelper(mov);
         } else {
-            if ((startCol + startRow) % 2 == 1) {
-                return false;
-            } else {
-
-                char middleCol = middleChar(startCol, endCol);
-                char middleRow = middleChar(startRow, endRow);
-                return get(middleCol, middleRow).equals(_whoseMove.opposite());
-
-
-            }
+            return jumpPossible(mov.fromIndex()) && checkJump(mov, false);
         }
     }
     /**NOT JUMP HELPER RETURN MOV.*/
     boolean notJumpHelper(Move mov) {
-        char startCol = mov.col0();
-        char startRow = mov.row0();
-        char endCol = mov.col1();
-        char endRow = mov.row1();
-
-        String start = Character.toString(startCol)
-                + Character.toString(startRow);
-        String end = Character.toString(endCol) + Character.toString(endRow);
-        if (oldMoves.containsKey(start)) {
-
-            if (oldMoves.get(start).equals(end)) {
-                return false;
-            }
-        }
-
-        if (_whoseMove == PIECE_VALUES[1]) {
-            if (endRow - startRow < 0 || startRow == '5') {
-                return false;
-            }
-        } else if (_whoseMove == PIECE_VALUES[2]) {
-            if (endRow - startRow > 0 || startRow == '1') {
-                return false;
-            }
-        } else if (mov.isLeftMove() || mov.isRightMove()) {
-            return true;
-        } else if ((startCol + startRow) % 2 == 1) {
-            return startCol == endCol;
+        if (oldMoves[mov.fromIndex()] == mov.toIndex()) {
+            return false;
         }
-        return true;
-
+        return (Geometry.stepMask(_whoseMove, mov.fromIndex())
+                & (1 << mov.toIndex())) != 0;
     }
 
     /**Returns the middle char assuming A and B are 0 or 2 between. */
@@ -615,7 +821,7 @@ class Board extends Observable {
 
     @Override
     public int hashCode() {
-        return this.toString().length();
+        return (int) (_key ^ (_key >>> Integer.SIZE));
     }
 
     @Override
@@ -625,25 +831,17 @@ class Board extends Observable {
         } else if (_whoseMove != ((Board) obj)._whoseMove) {
             return false;
         } else {
-            HashMap<String, PieceColor> otherBoard = ((Board) obj)._board;
-            if (otherBoard == _board) {
-                return true;
-            } else if (otherBoard.size() != _board.size()) {
+            Board other = (Board) obj;
+            if (_white != other._white || _black != other._black) {
                 return false;
             }
-            Set<String> keys = _board.keySet();
-
-            for (String k : keys) {
-                if (!otherBoard.containsKey(k)) {
-                    return false;
-                }
-                if (_board.get(k) != otherBoard.get(k)) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                if (get(k) != EMPTY && oldMoves[k] != other.oldMoves[k]) {
                     return false;
                 }
             }
-
+            return true;
         }
-        return true;
     }
 
     @Override
@@ -665,7 +863,6 @@ class Board extends Observable {
     /**No legend OUT. */
     void falseToString(Formatter out) {
         String output = "";
-        String curr;
         PieceColor currPiece;
         output += " ";
         int i = 0;
@@ -681,8 +878,7 @@ class Board extends Observable {
                 }
                 i++;
 
-                curr = Character.toString(c) + Character.toString(r);
-                currPiece = _board.get(curr);
+                currPiece = get(c, r);
 
                 if (currPiece == PIECE_VALUES[0]) {
                     output += "-";
@@ -700,7 +896,6 @@ class Board extends Observable {
     /**Legend OUT.*/
     void trueToString(Formatter out) {
         String output = "";
-        String curr;
         PieceColor currPiece;
         output += "5 ";
         int i = 0;
@@ -717,8 +912,7 @@ class Board extends Observable {
                 }
                 i++;
 
-                curr = Character.toString(c) + Character.toString(r);
-                currPiece = _board.get(curr);
+                currPiece = get(c, r);
 
                 if (currPiece == PIECE_VALUES[0]) {
                     output += "-";
@@ -749,9 +943,74 @@ class Board extends Observable {
     /** Set true when game ends. */
     private boolean _gameOver;
 
+    /** Zobrist hash of the current position (see key()). */
+    private long _key;
+
     /** Convenience value giving values of pieces at each ordinal position. */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
+    /** Number of codes for which callers of getMoves(long[], int)
+     *  initially make room, which exceeds the number of legal moves in
+     *  any position that arises in ordinary play.  Positions set up by
+     *  hand may have many more. */
+    static final int TYPICAL_MOVES = 250;
+
+    /** Value of _jumpers when it must be recomputed. */
+    private static final int UNKNOWN = -1;
+
+    /** Mask of all squares on the board, in the format of pieces(). */
+    static final int ALL_SQUARES = (1 << (MAX_INDEX + 1)) - 1;
+
+    /** Zobrist keys: ZOBRIST_PIECES[C][K] for a piece whose color has
+     *  ordinal C on square K, ZOBRIST_OLD_MOVES[K][J] for a piece on K
+     *  that may not move back to J, and ZOBRIST_SIDE for black to move.
+     *  They come from a fixed seed so that keys are the same in every
+     *  run (and may be stored in files). */
+    private static final long[][] ZOBRIST_PIECES =
+        new long[PIECE_VALUES.length][MAX_INDEX + 1],
+        ZOBRIST_OLD_MOVES = new long[MAX_INDEX + 1][MAX_INDEX + 1];
+    /** Zobrist key for the side to move (see ZOBRIST_PIECES). */
+    private static final long ZOBRIST_SIDE;
+
+    /** Seed for the Zobrist keys. */
+    private static final long ZOBRIST_SEED = 0x5117ca7L;
+
+    static {
+        Random keys = new Random(ZOBRIST_SEED);
+        for (long[] table : ZOBRIST_PIECES) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                table[k] = keys.nextLong();
+            }
+        }
+        for (long[] table : ZOBRIST_OLD_MOVES) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                table[k] = keys.nextLong();
+            }
+        }
+        ZOBRIST_SIDE = keys.nextLong();
+    }
+
+    /** The piece values of Evaluator.MATERIAL, in the format of
+     *  _pieceValues. */
+    private static final int[] MATERIAL_VALUES =
+        tabulate(Evaluator.MATERIAL);
+
+    /** Initial capacity of the undo stack. */
+    private static final int INITIAL_UNDO_SIZE = 64;
+
+    /** Mask for one linearized index (5 bits). */
+    private static final int SQUARE_BITS = 0x1f;
+
+    /** Bit offsets of the fields of an undo record: the starting square
+     *  is in the low 5 bits, followed by the final square, the mask of
+     *  captured squares, the ordinal of the side that moved, and
+     *  oldMoves[final square] + 1 before the move. */
+    private static final int
+        UNDO_TO = 5,
+        UNDO_CAPTURED = 10,
+        UNDO_SIDE = 35,
+        UNDO_OLD_MOVE = 37;
+
     /** One cannot create arrays of ArrayList<Move>, so we introduce
      *  a specialized private list type for this purpose. */
     private static class MoveList extends ArrayList<Move> {
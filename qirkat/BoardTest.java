@@ -1,5 +1,7 @@
 package qirkat;
 
+import java.util.HashSet;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -160,6 +162,225 @@ public class BoardTest {
 
     }
 
+    @Test
+    public void testDiagonals() {
+        Board b = new Board();
+        b.setPieces("-w--- ----- ----- ----- ----b", PieceColor.WHITE);
+        assertFalse(b.legalMove(Move.parseMove("b1-c2")));
+        assertTrue(b.legalMove(Move.parseMove("b1-b2")));
+        b.setPieces("----- -w--- ----- ----- ----b", PieceColor.WHITE);
+        assertTrue(b.legalMove(Move.parseMove("b2-c3")));
+        assertEquals(5, b.getMoves().size());
+    }
+
+    @Test
+    public void testUndoRestrictions() {
+        Board b = new Board();
+        b.setPieces("-w--- ----- ----- ----- ---b-", PieceColor.WHITE);
+        b.makeMove(Move.parseMove("b1-c1"));
+        b.makeMove(Move.parseMove("d5-d4"));
+        assertFalse(b.legalMove(Move.parseMove("c1-b1")));
+        b.undo();
+        b.undo();
+        assertTrue(b.legalMove(Move.parseMove("b1-c1")));
+        b.makeMove(Move.parseMove("b1-b2"));
+        b.makeMove(Move.parseMove("d5-d4"));
+        assertTrue(b.legalMove(Move.parseMove("b2-a2")));
+    }
+
+    @Test
+    public void testUndoCircularJump() {
+        Board b = new Board();
+        b.setPieces("wb--- b-b-- -b--- ----- ----b", PieceColor.WHITE);
+        Board b0 = new Board(b);
+        Move loop = Move.parseMove("a1-c1-c3-a3-a1");
+        assertTrue(b.legalMove(loop));
+        b.makeMove(loop);
+        assertEquals("  - - - - b\n  - - - - -\n  - - - - -\n"
+                     + "  - - - - -\n  w - - - -", b.toString());
+        b.undo();
+        assertEquals(b0, b);
+        assertEquals(b0.toString(), b.toString());
+    }
+
+    /** A position with a jump of MoveCode.MAX_LEGS legs, the most
+     *  possible. */
+    static final String LONGEST_JUMP_BOARD =
+        "wb-b- bbbbb -b-b- bbbbb -b-b-";
+
+    @Test
+    public void testLongestJump() {
+        Board b = new Board();
+        b.setPieces(LONGEST_JUMP_BOARD, PieceColor.WHITE);
+        Move longest =
+            Move.parseMove("a1-c1-e1-e3-c3-a3-a5-c5-e5-e3-c1-c3-c5-a3-a1-"
+                           + "c3-e5");
+        assertTrue(b.legalMove(longest));
+        long code = MoveCode.encode(longest);
+        assertEquals(MoveCode.MAX_LEGS, MoveCode.legs(code));
+        assertSame(longest, MoveCode.toMove(code));
+        assertEquals(longest.captures(), MoveCode.captures(code));
+        b.makeMove(code);
+        assertEquals("  - - - - w\n  - - - - -\n  - - - - -\n"
+                     + "  - - - - -\n  - - - - -", b.toString());
+    }
+
+    @Test
+    public void testDenseMoveCount() {
+        Board b = new Board();
+        b.setPieces(LONGEST_JUMP_BOARD, PieceColor.WHITE);
+        PieceColor[][] squares = new PieceColor[5][5];
+        for (int c = 0; c < 5; c += 1) {
+            for (int r = 0; r < 5; r += 1) {
+                squares[c][r] = b.get((char) ('a' + c), (char) ('1' + r));
+            }
+        }
+        squares[0][0] = PieceColor.EMPTY;
+        int expected = countJumps(squares, 0, 0, 0);
+        assertEquals(77206, expected);
+        assertEquals(expected, b.getMoves().size());
+        long[] codes = new long[10];
+        assertEquals(expected + 3, b.getMoves(codes, 3));
+        codes = Board.reserve(codes, expected + 3);
+        assertEquals(expected + 3, b.getMoves(codes, 3));
+        HashSet<Long> distinct = new HashSet<>();
+        int longest;
+        longest = 0;
+        for (int i = 3; i < expected + 3; i += 1) {
+            distinct.add(codes[i]);
+            longest = Math.max(longest, MoveCode.legs(codes[i]));
+        }
+        assertEquals(expected, distinct.size());
+        assertEquals(MoveCode.MAX_LEGS, longest);
+        assertEquals(expected, Perft.perft(b, 1));
+        long replies;
+        replies = 0;
+        for (long n : Perft.divide(b, 1)) {
+            replies += n;
+        }
+        assertEquals(replies, Perft.perft(b, 2));
+    }
+
+    /** Return the number of maximal sequences of white jumps that
+     *  continue a sequence of LEGS jumps ending on column C and row R
+     *  (from 0) of SQUARES, which gives the contents of the board, with
+     *  captured pieces and the jumping piece removed.  This is
+     *  independent of Board's move generator. */
+    private static int countJumps(PieceColor[][] squares, int c, int r,
+                                  int legs) {
+        int count;
+        count = 0;
+        for (int dc = -1; dc <= 1; dc += 1) {
+            for (int dr = -1; dr <= 1; dr += 1) {
+                int c2 = c + 2 * dc, r2 = r + 2 * dr;
+                if ((dc == 0 && dr == 0) || (dc != 0 && dr != 0
+                                             && (c + r) % 2 != 0)
+                    || c2 < 0 || c2 > 4 || r2 < 0 || r2 > 4
+                    || squares[c + dc][r + dr] != PieceColor.BLACK
+                    || squares[c2][r2] != PieceColor.EMPTY) {
+                    continue;
+                }
+                squares[c + dc][r + dr] = PieceColor.EMPTY;
+                count += countJumps(squares, c2, r2, legs + 1);
+                squares[c + dc][r + dr] = PieceColor.BLACK;
+            }
+        }
+        if (count == 0 && legs > 0) {
+            count = 1;
+        }
+        return count;
+    }
+
+    @Test
+    public void testKeys() {
+        Board b0 = new Board(), b1 = new Board();
+        b0.setPieces("w---- ----- ----- ----- ----b", PieceColor.WHITE);
+        makeMoves(b0, new String[] { "a1-a2", "e5-e4", "a2-b2" });
+        b1.setPieces("----- -w--- ----- ----b -----", PieceColor.BLACK);
+        assertNotEquals(b0, b1);
+        assertNotEquals(b0.key(), b1.key());
+        makeMoves(b0, new String[] { "e4-e3", "b2-b3" });
+        makeMoves(b1, new String[] { "e4-e3", "b2-b3" });
+        assertEquals(b0, b1);
+        assertEquals(b0.key(), b1.key());
+        assertEquals(b0.hashCode(), b1.hashCode());
+        b1.setPieces("----- ----- -w--b ----- -----", PieceColor.WHITE);
+        assertNotEquals(b0.key(), b1.key());
+        b1.setPieces("----- ----- -w--b ----- -----", PieceColor.BLACK);
+        assertEquals(b0.key(), b1.key());
+    }
+
+    @Test
+    public void testBoardView() {
+        Board b0 = new Board();
+        assertEquals(25, b0.getBoard().size());
+        assertEquals(PieceColor.EMPTY, b0.getBoard().get("c3"));
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(PieceColor.WHITE, b0.getBoard().get("c3"));
+        assertEquals(PieceColor.EMPTY, b0.getBoard().get("c2"));
+        assertEquals(12, Integer.bitCount(b0.pieces(PieceColor.WHITE)));
+        b0.undo();
+        assertEquals(PieceColor.EMPTY, b0.getBoard().get("c3"));
+        assertEquals(PieceColor.WHITE, b0.get('c', '2'));
+    }
+
+    @Test
+    public void testJumpers() {
+        Board b0 = new Board();
+        assertEquals(0, b0.jumpers());
+        b0.makeMove(Move.parseMove("c2-c3"));
+        int jumpers = b0.jumpers();
+        assertTrue(jumpers != 0);
+        assertTrue(b0.legalMove(Move.parseMove("c4-c2")));
+        assertFalse(b0.legalMove(Move.parseMove("a4-b3")));
+        b0.undo();
+        assertEquals(0, b0.jumpers());
+        assertTrue(b0.legalMove(Move.parseMove("d2-c3")));
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(jumpers, b0.jumpers());
+        assertEquals(jumpers, new Board(b0).jumpers());
+    }
+
+    @Test
+    public void testPieceValues() {
+        Evaluator squares = new Evaluator() {
+            @Override
+            public int pieceValue(PieceColor color, int k) {
+                return color == PieceColor.WHITE ? k + 1 : -3 * k;
+            }
+
+            @Override
+            public int materialValue() {
+                return 1;
+            }
+
+            @Override
+            public int score(Board board) {
+                return board.pieceValues(this);
+            }
+        };
+        Board b0 = new Board();
+        assertEquals(0, b0.pieceValues(Evaluator.MATERIAL));
+        b0.setEvaluator(squares);
+        int initial = b0.pieceValues(squares);
+        makeMoves(b0, GAME3);
+        Board b1 = new Board();
+        String rows = "";
+        for (String row : b0.toString().split("\n")) {
+            rows = row.replaceAll(" ", "") + rows;
+        }
+        b1.setPieces(rows, b0.whoseMove());
+        assertEquals(b1.pieceValues(squares), b0.pieceValues(squares));
+        assertEquals(b1.pieceValues(Evaluator.MATERIAL),
+                     b0.pieceValues(Evaluator.MATERIAL));
+        assertEquals(b0.pieceValues(squares),
+                     new Board(b0).pieceValues(squares));
+        for (int i = 0; i < GAME3.length; i += 1) {
+            b0.undo();
+        }
+        assertEquals(initial, b0.pieceValues(squares));
+    }
+
     @Test
     public void testInt() {
         Board b0 = new Board();
@@ -25,6 +25,11 @@ class Command {
         PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
         /* Valid at any time. */
         LOAD("load\\s+(\\S+)"),
+        TIME("time\\s+(\\d+)"),
+        WEIGHTS("weights\\s+(\\S+)"),
+        BOOK("book\\s+(\\S+)"),
+        PERFT("perft\\s+(\\d{1,2})"),
+        DIVIDE("divide\\s+(\\d{1,2})"),
         QUIT, CLEAR, DUMP, HELP, UNDO,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
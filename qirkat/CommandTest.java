@@ -43,6 +43,32 @@ public class CommandTest {
         checkError("seed 142 foo");
     }
 
+    @Test public void testTIME() {
+        check("time 500", TIME, "500");
+        check("time 0", TIME, "0");
+        checkError("time");
+        checkError("time -5");
+        checkError("time 500 foo");
+    }
+
+    @Test public void testWEIGHTS() {
+        check("weights tuned.txt", WEIGHTS, "tuned.txt");
+        checkError("weights");
+    }
+
+    @Test public void testBOOK() {
+        check("book openings.bk", BOOK, "openings.bk");
+        checkError("book");
+    }
+
+    @Test public void testPERFT() {
+        check("perft 5", PERFT, "5");
+        check("divide 3", DIVIDE, "3");
+        checkError("perft");
+        checkError("perft 123");
+        checkError("divide x");
+    }
+
     @Test public void testSTART() {
         check("start", START);
         checkError("start foo");
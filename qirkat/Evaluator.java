@@ -0,0 +1,31 @@
+package qirkat;
+
+/** A static evaluation function for positions, used by AIs at the leaves
+ *  of their searches.  Values are from White's point of view: positive
+ *  values favor White.
+ *
+ *  An evaluator's value may include a sum of terms for the individual
+ *  pieces, each depending only on the piece's color and square.  A Board
+ *  whose evaluator it is (see Board.setEvaluator) keeps that sum up to
+ *  date as moves are made and undone, so that score can read it in
+ *  constant time with Board.pieceValues.
+ *  @author andrew
+ */
+interface Evaluator {
+
+    /** An evaluator that counts material only. */
+    Evaluator MATERIAL = new MaterialEvaluator();
+
+    /** Return the contribution to the value of a position of a piece of
+     *  color COLOR (WHITE or BLACK) on the square with linearized index
+     *  K.  The result must not change while any Board uses me. */
+    int pieceValue(PieceColor color, int k);
+
+    /** Return the approximate value of one piece, the unit in which
+     *  searches measure margins (at least 1). */
+    int materialValue();
+
+    /** Return the value of BOARD. */
+    int score(Board board);
+
+}
@@ -0,0 +1,86 @@
+package qirkat;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the position evaluators.
+ *  @author andrew
+ */
+public class EvaluatorTest {
+
+    private static final String[] GAME = { "c2-c3", "c4-c2",
+        "c1-c3", "a3-c1", "c3-a3", "c5-c4", "a3-c5-c3", "d4-b2", "a1-c3",
+        "c1-a1-a3"};
+
+    @Test
+    public void testReadWrite() throws IOException {
+        PositionalEvaluator eval = PositionalEvaluator.read(
+            new StringReader("# Test weights\n"
+                             + "material 90\n\n"
+                             + "center 7  # comment\n"
+                             + "black 1 2 3 4 5 6 7 8 9 10 11 12 13 "
+                             + "14 15 16 17 18 19 20 21 22 23 24 25\n"));
+        int[] weights = eval.weights();
+        assertEquals(90, weights[PositionalEvaluator.MATERIAL]);
+        assertEquals(7, weights[PositionalEvaluator.CENTER]);
+        assertEquals(PositionalEvaluator.DEFAULT_WEIGHTS
+                     [PositionalEvaluator.MOBILITY],
+                     weights[PositionalEvaluator.MOBILITY]);
+        assertEquals(25, weights[PositionalEvaluator.BLACK_SQUARES + 24]);
+        StringWriter out = new StringWriter();
+        eval.write(new PrintWriter(out));
+        assertArrayEquals(weights, PositionalEvaluator.read(
+            new StringReader(out.toString())).weights());
+    }
+
+    @Test(expected = GameException.class)
+    public void testBadWeights() throws IOException {
+        PositionalEvaluator.read(new StringReader("center 3 4\n"));
+    }
+
+    @Test
+    public void testSetCommand() {
+        Board b = new Board();
+        for (String mov : GAME) {
+            b.makeMove(Move.parseMove(mov));
+        }
+        Command cmnd = Command.parseCommand(Tuner.setCommand(b));
+        assertEquals(Command.Type.SETBOARD, cmnd.commandType());
+        Board b1 = new Board();
+        b1.setPieces(cmnd.operands()[1],
+                     PieceColor.valueOf(cmnd.operands()[0].toUpperCase()));
+        assertEquals(b.toString(), b1.toString());
+        assertEquals(b.whoseMove(), b1.whoseMove());
+    }
+
+    @Test
+    public void testFeatures() {
+        int[] weights = new int[PositionalEvaluator.NUM_WEIGHTS];
+        for (int i = 0; i < weights.length; i += 1) {
+            weights[i] = 3 * i - 40;
+        }
+        PositionalEvaluator eval = new PositionalEvaluator(weights);
+        int[] features = new int[weights.length];
+        Board b = new Board();
+        b.setEvaluator(eval);
+        for (String mov : GAME) {
+            b.makeMove(Move.parseMove(mov));
+            PositionalEvaluator.features(b, features);
+            int sum;
+            sum = 0;
+            for (int i = 0; i < weights.length; i += 1) {
+                sum += features[i] * weights[i];
+            }
+            assertEquals(sum, eval.score(b));
+            assertEquals(eval.score(b), eval.score(new Board(b)));
+        }
+        assertEquals(0, new PositionalEvaluator().score(new Board()));
+        assertEquals(0, Evaluator.MATERIAL.score(new Board()));
+    }
+
+}
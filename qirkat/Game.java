@@ -5,6 +5,7 @@ package qirkat;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ class Game {
         _board = board;
         _constBoard = _board.constantView();
         _reporter = reporter;
+        _evaluator = Main.evaluator();
     }
     /**Return reporter.*/
     Reporter reporter() {
@@ -46,16 +48,17 @@ class Game {
         return _inputs;
     }
 
-    /** Run a session of Qirkat gaming. */
+    /** Run a session of Qirkat gaming.  The Players persist from move
+     *  to move (so that AIs may think on their opponents' time), until
+     *  the game stops or a command changes their settings. */
     void process() {
-        Player white, black;
-        white = black = null;
         doClear(null);
         _whiteIsManual = true;
         _blackIsManual = false;
         Boolean textGUI = false;
         while (true) {
             _state = SETUP;
+            discardPlayers();
             while (_state == SETUP) {
                 doCommand();
             }
@@ -63,16 +66,8 @@ class Game {
                 Move move;
                 move = null;
 
-                if (_whiteIsManual) {
-                    white = new Manual(this, PieceColor.WHITE);
-                } else {
-                    white = new AI(this, PieceColor.WHITE);
-                }
-                if (_blackIsManual) {
-                    black = new Manual(this, PieceColor.BLACK);
-                } else {
-                    black = new AI(this, PieceColor.BLACK);
-                }
+                Player white = player(PieceColor.WHITE),
+                    black = player(PieceColor.BLACK);
                 if (_board.getMoves().size() == 0) {
                     _state = SETUP;
                     break;
@@ -106,6 +101,46 @@ class Game {
             }
         }
     }
+
+    /** Return the Player of COLOR for the current game, creating the
+     *  Players if there are none. */
+    Player player(PieceColor color) {
+        if (_white == null) {
+            createPlayers();
+        }
+        return color == PieceColor.WHITE ? _white : _black;
+    }
+
+    /** Create the Players for the current game, as specified by the
+     *  'auto' and 'manual' commands.  An AI ponders if so requested on
+     *  the command line and its opponent is manual. */
+    private void createPlayers() {
+        if (_whiteIsManual) {
+            _white = new Manual(this, PieceColor.WHITE);
+        } else {
+            AI ai = new AI(this, PieceColor.WHITE);
+            ai.setPondering(Main.pondering() && _blackIsManual);
+            _white = ai;
+        }
+        if (_blackIsManual) {
+            _black = new Manual(this, PieceColor.BLACK);
+        } else {
+            AI ai = new AI(this, PieceColor.BLACK);
+            ai.setPondering(Main.pondering() && _whiteIsManual);
+            _black = ai;
+        }
+    }
+
+    /** Stop and discard the current Players, if any, so that new ones
+     *  are created when next needed. */
+    private void discardPlayers() {
+        if (_white != null) {
+            _white.stop();
+            _black.stop();
+            _white = _black = null;
+        }
+    }
+
     /**Return board.*/
     Board getBoard() {
         return _board;
@@ -137,6 +172,40 @@ class Game {
         return false;
     }
 
+    /** Return the transposition table shared by my AIs, creating it (with
+     *  the size given on the command line) on first use.  It persists
+     *  from move to move and is shared by all my AIs; 'clear' empties
+     *  it. */
+    TranspositionTable transpositions() {
+        if (_transpositions == null) {
+            _transpositions = new TranspositionTable(Main.tableSize());
+        }
+        return _transpositions;
+    }
+
+    /** Return the evaluator with which my AIs score positions. */
+    Evaluator evaluator() {
+        return _evaluator;
+    }
+
+    /** Return the opening book from which my AIs play, or null if
+     *  none. */
+    OpeningBook book() {
+        return _book;
+    }
+
+    /** Return the move-ordering history shared by my AIs.  Like the
+     *  transposition table, it persists from move to move. */
+    HistoryTable history() {
+        return _history;
+    }
+
+    /** Return the time limit, in milliseconds, for each AI move, or 0
+     *  if AIs search to a fixed depth. */
+    long timeLimit() {
+        return _timeLimit;
+    }
+
     /** Return a read-only view of my game board. */
     Board board() {
         return _constBoard;
@@ -295,8 +364,13 @@ class Game {
 
     /** Perform the command 'clear'. */
     void doClear(String[] unused) {
+        discardPlayers();
 
         _board = new Board();
+        if (_transpositions != null) {
+            _transpositions.clear();
+        }
+        _history.clear();
         _state = SETUP;
         _whiteIsManual = true;
         _blackIsManual = false;
@@ -338,6 +412,52 @@ class Game {
             _randoms.setSeed(Long.MAX_VALUE);
         }
     }
+    /** Execute 'time OPERANDS[0]' command, where the operand is a string
+     *  of decimal digits giving the time allowed for each AI move in
+     *  milliseconds.  Silently substitutes another value if too large. */
+    void doTime(String[] operands) {
+        discardPlayers();
+        try {
+            _timeLimit = Long.parseLong(operands[0]);
+        } catch (NumberFormatException e) {
+            _timeLimit = Long.MAX_VALUE;
+        }
+    }
+
+    /** Perform the command 'weights OPERANDS[0]'. */
+    void doWeights(String[] operands) {
+        discardPlayers();
+        try (FileReader input = new FileReader(operands[0])) {
+            _evaluator = PositionalEvaluator.read(input);
+        } catch (IOException e) {
+            throw error("Cannot open file %s", operands[0]);
+        }
+        if (_transpositions != null) {
+            _transpositions.clear();
+        }
+    }
+
+    /** Perform the command 'book OPERANDS[0]'. */
+    void doBook(String[] operands) {
+        try {
+            _book = OpeningBook.read(new File(operands[0]));
+        } catch (IOException e) {
+            throw error("Cannot read opening book %s", operands[0]);
+        }
+    }
+
+    /** Perform the command 'perft OPERANDS[0]'. */
+    void doPerft(String[] operands) {
+        Perft.report(new Board(_board), Integer.parseInt(operands[0]),
+                     false, _reporter);
+    }
+
+    /** Perform the command 'divide OPERANDS[0]'. */
+    void doDivide(String[] operands) {
+        Perft.report(new Board(_board), Integer.parseInt(operands[0]),
+                     true, _reporter);
+    }
+
     /**Undo a move.*/
     void doUndo(String[] unused) {
         if (_whiteIsManual && _blackIsManual) {
@@ -380,6 +500,11 @@ class Game {
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
         _commands.put(UNDO, this::doUndo);
+        _commands.put(TIME, this::doTime);
+        _commands.put(WEIGHTS, this::doWeights);
+        _commands.put(BOOK, this::doBook);
+        _commands.put(PERFT, this::doPerft);
+        _commands.put(DIVIDE, this::doDivide);
     }
 
     /** Input source. */
@@ -389,10 +514,22 @@ class Game {
     private Board _board, _constBoard;
     /** Indicate which players are manual players (as opposed to AIs). */
     private boolean _whiteIsManual, _blackIsManual;
+    /** The current Players, or null if they are to be created. */
+    private Player _white, _black;
     /** Current game state. */
     private State _state;
     /** Used to send messages to the user. */
     private Reporter _reporter;
+    /** Search results cached by AIs (see transpositions()). */
+    private TranspositionTable _transpositions;
+    /** Evaluator used by my AIs (see evaluator()). */
+    private Evaluator _evaluator;
+    /** Opening book used by my AIs, or null. */
+    private OpeningBook _book;
+    /** Move-ordering scores kept by AIs (see history()). */
+    private final HistoryTable _history = new HistoryTable();
+    /** Time allowed for each AI move (milliseconds), or 0 for none. */
+    private long _timeLimit;
     /** Source of pseudo-random numbers (used by AIs). */
     private Random _randoms = new Random();
 }
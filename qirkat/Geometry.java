@@ -0,0 +1,165 @@
+package qirkat;
+
+import java.util.Arrays;
+
+import static qirkat.Move.*;
+import static qirkat.PieceColor.*;
+
+/** Precomputed neighbor tables for the 5x5 Qirkat lattice.  Squares are
+ *  denoted by their linearized indices (see Move.index).  Every square is
+ *  connected to its orthogonal neighbors; squares whose column and row
+ *  numbers have the same parity (a1, c1, b2, ...) are also connected to
+ *  their diagonal neighbors.
+ *
+ *  The tables list targets in a fixed order, which determines the order in
+ *  which moves are generated: for steps, left, right, forward, then the
+ *  forward-left and forward-right diagonals; for jumps, up, down, right,
+ *  left, then the four diagonals (up-right, down-right, up-left,
+ *  down-left).
+ *  @author andrew
+ */
+final class Geometry {
+
+    /** Marks the absence of a square. */
+    static final int NO_SQUARE = -1;
+
+    /** STEPS[C][K] lists the squares to which a piece whose color has
+     *  ordinal C may make a non-capturing move from K on an empty board.
+     *  Pieces on their last row cannot move, so these are empty. */
+    static final int[][][] STEPS = new int[PieceColor.values().length][][];
+
+    /** STEP_MASKS[C][K] is the set of squares in STEPS[C][K], as a mask
+     *  with bit J set for each square J. */
+    static final int[][] STEP_MASKS =
+        new int[PieceColor.values().length][MAX_INDEX + 1];
+
+    /** JUMP_OVER[K][I] and JUMP_TO[K][I] give the I-th jump from K: the
+     *  square jumped over and the landing square. */
+    static final int[][] JUMP_OVER = new int[MAX_INDEX + 1][],
+        JUMP_TO = new int[MAX_INDEX + 1][];
+
+    /** JUMPED[K0][K1] is the square jumped over by a jump from K0 to K1,
+     *  or NO_SQUARE if there is no such jump. */
+    static final int[][] JUMPED = new int[MAX_INDEX + 1][MAX_INDEX + 1];
+
+    /** Column and row displacements of the jump directions, in
+     *  table order. */
+    private static final int[] JUMP_DC = { 0, 0, 1, -1, 1, 1, -1, -1 },
+        JUMP_DR = { 1, -1, 0, 0, 1, -1, 1, -1 };
+
+    /** Number of orthogonal directions at the start of JUMP_DC/JUMP_DR. */
+    private static final int ORTHOGONAL = 4;
+
+    static {
+        for (int[] row : JUMPED) {
+            Arrays.fill(row, NO_SQUARE);
+        }
+        STEPS[EMPTY.ordinal()] = new int[MAX_INDEX + 1][0];
+        STEPS[WHITE.ordinal()] = new int[MAX_INDEX + 1][];
+        STEPS[BLACK.ordinal()] = new int[MAX_INDEX + 1][];
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            initSteps(WHITE, k, 1);
+            initSteps(BLACK, k, -1);
+            initJumps(k);
+        }
+    }
+
+    /** Not instantiable. */
+    private Geometry() {
+    }
+
+    /** Return the column number (0-4) of square K. */
+    static int colNum(int k) {
+        return k % SIDE;
+    }
+
+    /** Return the row number (0-4) of square K. */
+    static int rowNum(int k) {
+        return k / SIDE;
+    }
+
+    /** Return true iff square K has diagonal connections. */
+    static boolean isDiagonal(int k) {
+        return (colNum(k) + rowNum(k)) % 2 == 0;
+    }
+
+    /** Return the square at column C, row R (numbered from 0), or
+     *  NO_SQUARE if it is off the board. */
+    static int square(int c, int r) {
+        if (c < 0 || c >= SIDE || r < 0 || r >= SIDE) {
+            return NO_SQUARE;
+        }
+        return r * SIDE + c;
+    }
+
+    /** Return the non-capturing targets of a piece of color COLOR on
+     *  square K, as listed in STEPS. */
+    static int[] steps(PieceColor color, int k) {
+        return STEPS[color.ordinal()][k];
+    }
+
+    /** Return the set of non-capturing targets of a piece of color COLOR
+     *  on square K, as a mask. */
+    static int stepMask(PieceColor color, int k) {
+        return STEP_MASKS[color.ordinal()][k];
+    }
+
+    /** Return true iff a piece on K can jump, given that OPPONENTS is the
+     *  set of squares holding opposing pieces and EMPTY the set of empty
+     *  squares. */
+    static boolean canJump(int k, int opponents, int empty) {
+        int[] over = JUMP_OVER[k], to = JUMP_TO[k];
+        for (int i = 0; i < over.length; i += 1) {
+            if ((opponents & (1 << over[i])) != 0
+                && (empty & (1 << to[i])) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Fill in the step tables for COLOR at K, where DIR is the row
+     *  increment of a forward move. */
+    private static void initSteps(PieceColor color, int k, int dir) {
+        int c = colNum(k), r = rowNum(k);
+        int[] targets = new int[SIDE];
+        int n;
+        n = 0;
+        if (square(c, r + dir) != NO_SQUARE) {
+            int[] candidates = {
+                square(c - 1, r), square(c + 1, r), square(c, r + dir),
+                isDiagonal(k) ? square(c - 1, r + dir) : NO_SQUARE,
+                isDiagonal(k) ? square(c + 1, r + dir) : NO_SQUARE,
+            };
+            for (int sq : candidates) {
+                if (sq != NO_SQUARE) {
+                    targets[n] = sq;
+                    n += 1;
+                    STEP_MASKS[color.ordinal()][k] |= 1 << sq;
+                }
+            }
+        }
+        STEPS[color.ordinal()][k] = Arrays.copyOf(targets, n);
+    }
+
+    /** Fill in the jump tables for square K. */
+    private static void initJumps(int k) {
+        int c = colNum(k), r = rowNum(k);
+        int dirs = isDiagonal(k) ? JUMP_DC.length : ORTHOGONAL;
+        int[] over = new int[dirs], to = new int[dirs];
+        int n;
+        n = 0;
+        for (int d = 0; d < dirs; d += 1) {
+            int land = square(c + 2 * JUMP_DC[d], r + 2 * JUMP_DR[d]);
+            if (land != NO_SQUARE) {
+                over[n] = square(c + JUMP_DC[d], r + JUMP_DR[d]);
+                to[n] = land;
+                JUMPED[k][land] = over[n];
+                n += 1;
+            }
+        }
+        JUMP_OVER[k] = Arrays.copyOf(over, n);
+        JUMP_TO[k] = Arrays.copyOf(to, n);
+    }
+
+}
@@ -0,0 +1,57 @@
+package qirkat;
+
+import java.util.Arrays;
+
+import static qirkat.PieceColor.*;
+
+/** Scores of non-capturing moves for move ordering (the "history
+ *  heuristic"), indexed by the side to move and the move's starting and
+ *  final squares (a "butterfly" table).  A move earns credit each time
+ *  it refutes a position in a search, more for deeper searches, so moves
+ *  that have often been good elsewhere in the tree are tried early.
+ *
+ *  Several searching threads may share a table without locking: a lost
+ *  update merely costs a little ordering quality.
+ *  @author andrew
+ */
+class HistoryTable {
+
+    /** Largest score before all scores are halved. */
+    static final int MAX_SCORE = 1 << 24;
+
+    /** Return the score of the non-capturing move from FROM to TO by
+     *  SIDE. */
+    int score(PieceColor side, int from, int to) {
+        return _scores[index(side, from, to)];
+    }
+
+    /** Record that the non-capturing move from FROM to TO by SIDE caused
+     *  a cutoff in a search of DEPTH levels. */
+    void reward(PieceColor side, int from, int to, int depth) {
+        int i = index(side, from, to);
+        _scores[i] += depth * depth;
+        if (_scores[i] > MAX_SCORE) {
+            for (int k = 0; k < _scores.length; k += 1) {
+                _scores[k] /= 2;
+            }
+        }
+    }
+
+    /** Forget all scores. */
+    void clear() {
+        Arrays.fill(_scores, 0);
+    }
+
+    /** Return the index in _scores of the move from FROM to TO by
+     *  SIDE. */
+    private static int index(PieceColor side, int from, int to) {
+        return ((side == WHITE ? 0 : SQUARES) + from) * SQUARES + to;
+    }
+
+    /** Number of squares. */
+    private static final int SQUARES = Move.MAX_INDEX + 1;
+
+    /** The scores, for WHITE's moves then BLACK's. */
+    private final int[] _scores = new int[2 * SQUARES * SQUARES];
+
+}
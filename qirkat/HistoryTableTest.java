@@ -0,0 +1,49 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of HistoryTable.
+ *  @author andrew
+ */
+public class HistoryTableTest {
+
+    @Test
+    public void testReward() {
+        HistoryTable history = new HistoryTable();
+        assertEquals(0, history.score(WHITE, 7, 12));
+        history.reward(WHITE, 7, 12, 3);
+        assertEquals(9, history.score(WHITE, 7, 12));
+        history.reward(WHITE, 7, 12, 2);
+        assertEquals(13, history.score(WHITE, 7, 12));
+        assertEquals(0, history.score(BLACK, 7, 12));
+        assertEquals(0, history.score(WHITE, 12, 7));
+        history.reward(BLACK, 12, 7, 1);
+        assertEquals(1, history.score(BLACK, 12, 7));
+        assertEquals(13, history.score(WHITE, 7, 12));
+        history.clear();
+        assertEquals(0, history.score(WHITE, 7, 12));
+        assertEquals(0, history.score(BLACK, 12, 7));
+    }
+
+    @Test
+    public void testHalving() {
+        HistoryTable history = new HistoryTable();
+        history.reward(BLACK, 24, 19, 10);
+        history.reward(WHITE, 0, 5, 7);
+        int depth = 64;
+        int n;
+        for (n = 0; n * depth * depth <= HistoryTable.MAX_SCORE;
+             n += 1) {
+            assertEquals(n * depth * depth, history.score(WHITE, 1, 6));
+            history.reward(WHITE, 1, 6, depth);
+        }
+        assertEquals(n * depth * depth / 2, history.score(WHITE, 1, 6));
+        assertTrue(history.score(WHITE, 1, 6) <= HistoryTable.MAX_SCORE);
+        assertEquals(50, history.score(BLACK, 24, 19));
+        assertEquals(24, history.score(WHITE, 0, 5));
+    }
+
+}
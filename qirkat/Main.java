@@ -1,5 +1,7 @@
 package qirkat;
 
+import java.io.File;
+import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.PipedReader;
@@ -10,25 +12,20 @@ import java.io.PipedWriter;
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing", a transposition table of N megabytes
+     *  for the AIs if ARGS[k] is "--table=N", and N searching threads
+     *  per AI if ARGS[k] is "--threads=N".  The AIs' late move
+     *  reductions and futility pruning are turned off by
+     *  "--no-reductions" and "--no-futility".  AIs evaluate positions
+     *  with the weights in FILE if ARGS[k] is "--weights=FILE" (see
+     *  PositionalEvaluator), and consult the endgame tablebases in
+     *  directory DIR if ARGS[k] is "--tablebases=DIR" (see Tablebase).
+     *  AIs playing manual players search on their opponents' time if
+     *  ARGS[k] is "--ponder". */
     public static void main(String[] args) {
         boolean useGUI;
         System.out.println("CS61B Qirkat! Version 2.0");
-        useGUI = false;
-        _timing = false;
-        for (int i = 0; i < args.length; i += 1) {
-            switch (args[i]) {
-            case "--display":
-                useGUI = true;
-                break;
-            case "--timing":
-                _timing = true;
-                break;
-            default:
-                usage();
-                break;
-            }
-        }
+        useGUI = parseOptions(args);
 
         Game game;
         Board board = new Board();
@@ -59,27 +56,148 @@ public class Main {
         game.process();
     }
 
+    /** Set the options according to ARGS (see main), giving those that
+     *  ARGS do not mention their default values.  Return true iff ARGS
+     *  call for the display.  Exits with a usage message if ARGS are
+     *  invalid. */
+    static boolean parseOptions(String[] args) {
+        boolean useGUI;
+        useGUI = false;
+        _timing = false;
+        _tableSize = DEFAULT_TABLE_SIZE;
+        _threads = 1;
+        _evaluator = new PositionalEvaluator();
+        _tablebase = null;
+        _reductions = _futility = true;
+        _pondering = false;
+        for (int i = 0; i < args.length; i += 1) {
+            switch (args[i]) {
+            case "--display":
+                useGUI = true;
+                break;
+            case "--timing":
+                _timing = true;
+                break;
+            case "--no-reductions":
+                _reductions = false;
+                break;
+            case "--no-futility":
+                _futility = false;
+                break;
+            case "--ponder":
+                _pondering = true;
+                break;
+            default:
+                if (args[i].matches("--table=\\d{1,5}")) {
+                    _tableSize = Integer.parseInt(args[i].substring(8));
+                } else if (args[i].matches("--threads=0*[1-9]\\d{0,2}")) {
+                    _threads = Integer.parseInt(args[i].substring(10));
+                } else if (args[i].matches("--weights=.+")) {
+                    readWeights(args[i].substring(10));
+                } else if (args[i].matches("--tablebases=.+")) {
+                    readTablebases(args[i].substring(13));
+                } else {
+                    usage();
+                }
+                break;
+            }
+        }
+        return useGUI;
+    }
+
     /** Give usage message and exit. */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
+                           + " [--strict] [--table=MEGABYTES]"
+                           + " [--threads=N] [--no-reductions]"
+                           + " [--no-futility] [--weights=FILE]"
+                           + " [--tablebases=DIR] [--ponder]");
         System.exit(1);
     }
 
+    /** Set evaluator() to use the weights in FILE, or exit with an
+     *  error message if they cannot be read. */
+    private static void readWeights(String file) {
+        try (FileReader input = new FileReader(file)) {
+            _evaluator = PositionalEvaluator.read(input);
+        } catch (IOException excp) {
+            System.err.printf("Could not read weights from %s.%n", file);
+            System.exit(1);
+        } catch (GameException excp) {
+            System.err.printf("Bad weights file %s: %s%n", file,
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Set tablebase() to the tables in directory DIR, or exit with an
+     *  error message if they cannot be read. */
+    private static void readTablebases(String dir) {
+        try {
+            _tablebase = Tablebase.load(new File(dir));
+        } catch (IOException excp) {
+            System.err.printf("Could not read tablebases: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the size, in megabytes, of the transposition table to be
+     *  used by AIs. */
+    static int tableSize() {
+        return _tableSize;
+    }
+
+    /** Return the number of threads with which each AI searches. */
+    static int threads() {
+        return _threads;
+    }
+
+    /** Return the evaluator that AIs use initially. */
+    static Evaluator evaluator() {
+        return _evaluator;
+    }
+
+    /** Return the endgame tablebases that AIs consult, or null if
+     *  none. */
+    static Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Return true iff AIs playing against manual players think on
+     *  their opponents' time. */
+    static boolean pondering() {
+        return _pondering;
+    }
+
+    /** Return true iff AIs use late move reductions. */
+    static boolean reductions() {
+        return _reductions;
+    }
+
+    /** Return true iff AIs use futility pruning. */
+    static boolean futility() {
+        return _futility;
+    }
+
     /* TIMING */
 
     /** Start timing an operation. */
     static void startTiming() {
-        if (_timing) {
-            _startTime = System.currentTimeMillis();
-        }
+        _startTime = System.currentTimeMillis();
+    }
+
+    /** Return the time (msec) since the last call to startTiming(),
+     *  whether or not we are timing. */
+    static long elapsedTime() {
+        return System.currentTimeMillis() - _startTime;
     }
 
     /** End the timing started with the last call to startTiming().
      *  Report result if we are timing. */
     static void endTiming() {
         if (_timing) {
-            long time = System.currentTimeMillis() - _startTime;
+            long time = elapsedTime();
             System.err.printf("[%d msec]%n", time);
             _maxTime = Math.max(_maxTime, time);
             _totalTime += time;
@@ -113,6 +231,30 @@ public class Main {
     /** Maximum operation time. */
     private static long _maxTime;
 
+    /** Default size of the AIs' transposition table (megabytes). */
+    static final int DEFAULT_TABLE_SIZE = 16;
+
+    /** Size of the AIs' transposition table (megabytes). */
+    private static int _tableSize = DEFAULT_TABLE_SIZE;
+
+    /** Number of threads used by each AI's search. */
+    private static int _threads = 1;
+
+    /** Initial evaluator used by AIs. */
+    private static Evaluator _evaluator = new PositionalEvaluator();
+
+    /** Endgame tablebases consulted by AIs, or null. */
+    private static Tablebase _tablebase;
+
+    /** True iff AIs use late move reductions. */
+    private static boolean _reductions = true;
+
+    /** True iff AIs use futility pruning. */
+    private static boolean _futility = true;
+
+    /** True iff AIs ponder against manual players. */
+    private static boolean _pondering;
+
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
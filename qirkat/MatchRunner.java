@@ -0,0 +1,516 @@
+package qirkat;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static qirkat.PieceColor.*;
+import static qirkat.GameException.error;
+
+/** Matches between two configurations of the AI, A and B, played within
+ *  one process.  Usage:
+ *
+ *      java qirkat.MatchRunner [OPTIONS] GAMES
+ *
+ *  plays GAMES games (rounded up to an even number) between A and B,
+ *  several at once, and reports A's wins, draws, and losses, its Elo
+ *  rating relative to B with a 95% confidence interval, and the
+ *  log-likelihood ratio (LLR) of a sequential probability ratio test
+ *  (SPRT) of the hypothesis that A is ELO1 points stronger than B
+ *  against the hypothesis that it is ELO0 points stronger.  The match
+ *  stops early once the test accepts either one, with error rates
+ *  ALPHA and BETA.
+ *
+ *  Games are played in pairs from the same opening, with A playing
+ *  White in one and Black in the other.  An opening is either a few
+ *  random moves or moves from an opening book, chosen with the random
+ *  numbers of a Game seeded (by its 'seed' command) with the match's
+ *  seed plus the number of openings tried so far, so that matches are
+ *  reproducible.  Since the AIs are deterministic, pairs of games from
+ *  the same position would just repeat each other, so no two pairs
+ *  start from the same position: openings that lead to one already
+ *  used are tried again, and the match is not played if
+ *  MAX_OPENING_TRIES tries in a row fail to find a new one.  Each
+ *  thread playing games has its own Games (one per configuration, so
+ *  that A and B do not share transposition tables), Boards, AIs, and
+ *  NullReporters.  A game still going after MAX_GAME_MOVES moves is a
+ *  draw.
+ *
+ *  The options are
+ *
+ *      --parallel=N    Play N games at once (default: one per processor).
+ *      --seed=N        Seed for openings (default 0).
+ *      --book=FILE     Open with moves from the book in FILE.
+ *      --random=N      Otherwise, open with N random moves (default 8).
+ *      --elo0=E        The SPRT's hypotheses (default 0 and 10).
+ *      --elo1=E
+ *
+ *  and the following, which apply to A if prefixed by "a-" (as in
+ *  --a-depth=4), to B if prefixed by "b-", and otherwise to both:
+ *
+ *      --depth=N       Search N levels per move.
+ *      --time=MSEC     Search for MSEC milliseconds per move.
+ *      --weights=FILE  Evaluate positions with the weights in FILE.
+ *      --no-reductions, --no-futility  As for qirkat.Main.
+ *  @author andrew
+ */
+class MatchRunner {
+
+    /** Length of the longest game (in moves), after which it is a
+     *  draw. */
+    static final int MAX_GAME_MOVES = 300;
+
+    /** Probabilities of accepting the SPRT's ELO1 hypothesis when ELO0
+     *  holds, and vice versa. */
+    static final double ALPHA = 0.05, BETA = 0.05;
+
+    /** Number of openings tried in a row without finding a new one
+     *  after which a match gives up. */
+    static final int MAX_OPENING_TRIES = 10000;
+
+    /** Play the match described by ARGS (see the class comment). */
+    public static void main(String... args) {
+        MatchRunner runner = new MatchRunner();
+        int games;
+        games = -1;
+        try {
+            for (String arg : args) {
+                if (games < 0 && arg.matches("\\d{1,7}")) {
+                    games = Integer.parseInt(arg);
+                } else {
+                    runner.option(arg);
+                }
+            }
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("I/O error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        if (games <= 0) {
+            System.err.println("Usage: java qirkat.MatchRunner [OPTIONS] "
+                               + "GAMES");
+            System.exit(1);
+        }
+        try {
+            runner.run(games + games % 2, System.out, System.err);
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A runner with the default options, under which A and B are both
+     *  the default AI. */
+    MatchRunner() {
+        _entrants[0] = new Entrant();
+        _entrants[1] = new Entrant();
+    }
+
+    /** Apply OPTION (see the class comment).  Throws a GameException if
+     *  it is unknown or malformed, and an IOException if a file it
+     *  names cannot be read. */
+    void option(String option) throws IOException {
+        Matcher opt = OPTION.matcher(option);
+        if (!opt.matches()) {
+            throw error("bad option: %s", option);
+        }
+        String prefix = opt.group(1), name = opt.group(2),
+            value = opt.group(3);
+        if ((value == null) != name.startsWith("no-")) {
+            throw error("bad option: %s", option);
+        }
+        try {
+            if (prefix == null && matchOption(name, value)) {
+                return;
+            }
+            for (int e = 0; e < _entrants.length; e += 1) {
+                if (prefix == null || prefix.charAt(0) == "ab".charAt(e)) {
+                    if (!_entrants[e].option(name, value)) {
+                        throw error("bad option: %s", option);
+                    }
+                }
+            }
+        } catch (NumberFormatException excp) {
+            throw error("bad value in option %s", option);
+        }
+    }
+
+    /** Play GAMES (an even number) games of the match, or fewer if the
+     *  SPRT concludes first, and report the results to OUT.  Report
+     *  progress to LOG.  Throws a GameException, without playing, if
+     *  there are not enough distinct openings. */
+    void run(int games, PrintStream out, PrintStream log) {
+        ArrayList<ArrayList<Move>> openings = openings(games / 2);
+        ExecutorService pool = Executors.newFixedThreadPool(_parallel);
+        ThreadLocal<Table> tables = ThreadLocal.withInitial(Table::new);
+        ArrayList<Future<?>> pairs = new ArrayList<>();
+        _log = log;
+        for (ArrayList<Move> opening : openings) {
+            pairs.add(pool.submit(() -> {
+                if (!_stopped) {
+                    Table table = tables.get();
+                    record(playGame(table, opening, true));
+                    record(playGame(table, opening, false));
+                }
+            }));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> pair : pairs) {
+                pair.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        } catch (ExecutionException excp) {
+            pool.shutdownNow();
+            throw new IllegalStateException(excp.getCause());
+        }
+        report(out);
+    }
+
+    /** Return the number of games played so far. */
+    synchronized int gamesPlayed() {
+        return _wins + _draws + _losses;
+    }
+
+    /** Return the Elo rating difference at which the expected score of
+     *  the stronger player is SCORE (between 0 and 1). */
+    static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /** Return the expected score of a player who is rated ELO points
+     *  above the opponent. */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /** Return the log-likelihood ratio of the hypotheses that a player
+     *  with WINS wins, DRAWS draws, and LOSSES losses is ELO1 and ELO0
+     *  points stronger than the opponent, using the normal approximation
+     *  to the distribution of the mean score.  Returns 0 when there are
+     *  no results. */
+    static double llr(int wins, int draws, int losses,
+                      double elo0, double elo1) {
+        int n = wins + draws + losses;
+        if (n == 0) {
+            return 0;
+        }
+        double score = (wins + 0.5 * draws) / n;
+        double variance = variance(wins, draws, losses);
+        double s0 = expectedScore(elo0), s1 = expectedScore(elo1);
+        return (s1 - s0) * (2 * score - s0 - s1) / (2 * variance / n);
+    }
+
+    /** Return the variance of the score of one game of WINS + DRAWS +
+     *  LOSSES = N > 0 games, as estimated from those results, but at
+     *  least 1/(4N), about what it would be if one of them had been a
+     *  draw.  Without the floor, a clean sweep would have no variance
+     *  and so no weight as evidence. */
+    static double variance(int wins, int draws, int losses) {
+        int n = wins + draws + losses;
+        double score = (wins + 0.5 * draws) / n;
+        double variance = (wins * square(1 - score)
+                           + draws * square(0.5 - score)
+                           + losses * square(score)) / n;
+        return Math.max(variance, 0.25 / n);
+    }
+
+    /** Return SCORE, the mean score of N games, limited to the range in
+     *  which its Elo rating is finite: no further from 0 or 1 than if
+     *  one of the games had been a draw. */
+    static double clamp(double score, int n) {
+        return Math.min(Math.max(score, 0.5 / n), 1 - 0.5 / n);
+    }
+
+    /** Return X squared. */
+    private static double square(double x) {
+        return x * x;
+    }
+
+    /** Apply the match option NAME=VALUE (VALUE null if there is no
+     *  '=...'), returning false if NAME is not a match option. */
+    private boolean matchOption(String name, String value)
+        throws IOException {
+        switch (name) {
+        case "parallel":
+            _parallel = Math.max(1, Integer.parseInt(value));
+            return true;
+        case "seed":
+            _seed = Long.parseLong(value);
+            return true;
+        case "book":
+            _book = OpeningBook.read(new File(value));
+            return true;
+        case "random":
+            _randomMoves = Integer.parseInt(value);
+            return true;
+        case "elo0":
+            _elo0 = Double.parseDouble(value);
+            return true;
+        case "elo1":
+            _elo1 = Double.parseDouble(value);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Return PAIRS openings leading to distinct positions, as described
+     *  in the class comment.  Throws a GameException if there are not
+     *  that many. */
+    ArrayList<ArrayList<Move>> openings(int pairs) {
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new NullReporter());
+        ArrayList<ArrayList<Move>> result = new ArrayList<>();
+        HashSet<Long> positions = new HashSet<>();
+        long seed;
+        int failures;
+        seed = _seed;
+        failures = 0;
+        while (result.size() < pairs) {
+            if (failures == MAX_OPENING_TRIES) {
+                throw error("only %d distinct openings found",
+                            result.size());
+            }
+            game.doSeed(new String[] { Long.toString(seed) });
+            seed += 1;
+            Board board = new Board();
+            ArrayList<Move> opening = opening(game, board);
+            if (positions.add(board.key())) {
+                result.add(opening);
+                failures = 0;
+            } else {
+                failures += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return opening moves from the initial position, chosen with the
+     *  random numbers of GAME, and make them on BOARD, which must be in
+     *  the initial position. */
+    private ArrayList<Move> opening(Game game, Board board) {
+        ArrayList<Move> result = new ArrayList<>();
+        while (true) {
+            Move mov;
+            mov = null;
+            if (_book != null) {
+                mov = _book.select(board, game);
+            } else if (result.size() < _randomMoves) {
+                ArrayList<Move> moves = board.getMoves();
+                if (!moves.isEmpty()) {
+                    mov = moves.get(game.nextRandom(moves.size()));
+                }
+            }
+            if (mov == null) {
+                return result;
+            }
+            board.makeMove(mov);
+            result.add(mov);
+        }
+    }
+
+    /** Play a game between A and B at TABLE after the moves OPENING,
+     *  with A playing White iff A_IS_WHITE.  Return A's score in half
+     *  points: 2 for a win, 1 for a draw, and 0 for a loss. */
+    private int playGame(Table table, ArrayList<Move> opening,
+                         boolean aIsWhite) {
+        for (Game game : table._games) {
+            game.doClear(null);
+            for (Move mov : opening) {
+                game.getBoard().makeMove(mov);
+            }
+        }
+        Board board = table._games[0].getBoard();
+        for (int n = opening.size(); n < MAX_GAME_MOVES; n += 1) {
+            PieceColor side = board.whoseMove();
+            if (board.getMoves().isEmpty()) {
+                return (side == WHITE) == aIsWhite ? 0 : 2;
+            }
+            int entrant = (side == WHITE) == aIsWhite ? 0 : 1;
+            Move mov = table._players[entrant][side.ordinal()].myMove();
+            for (Game game : table._games) {
+                game.getBoard().makeMove(mov);
+            }
+        }
+        return 1;
+    }
+
+    /** Record a game in which A scored SCORE half points, and stop the
+     *  match if the SPRT has concluded. */
+    private synchronized void record(int score) {
+        if (score == 2) {
+            _wins += 1;
+        } else if (score == 1) {
+            _draws += 1;
+        } else {
+            _losses += 1;
+        }
+        double llr = llr(_wins, _draws, _losses, _elo0, _elo1);
+        if (llr <= lowerBound() || llr >= upperBound()) {
+            _stopped = true;
+        }
+        if (gamesPlayed() % PROGRESS_INTERVAL == 0) {
+            _log.printf("%d games: +%d =%d -%d, LLR %.2f%n", gamesPlayed(),
+                        _wins, _draws, _losses, llr);
+        }
+    }
+
+    /** Report the results so far to OUT. */
+    private synchronized void report(PrintStream out) {
+        int n = gamesPlayed();
+        out.printf("Games: %d  A: +%d =%d -%d%n", n, _wins, _draws,
+                   _losses);
+        if (n == 0) {
+            return;
+        }
+        double score = (_wins + 0.5 * _draws) / n;
+        double margin =
+            Z_95 * Math.sqrt(variance(_wins, _draws, _losses) / n);
+        out.printf("Score: %.1f%%  Elo: %.1f [%.1f, %.1f]%n", 100 * score,
+                   elo(clamp(score, n)), elo(clamp(score - margin, n)),
+                   elo(clamp(score + margin, n)));
+        double llr = llr(_wins, _draws, _losses, _elo0, _elo1);
+        String verdict = llr >= upperBound() ? "H1 accepted"
+            : llr <= lowerBound() ? "H0 accepted" : "inconclusive";
+        out.printf("SPRT (elo0 %.1f, elo1 %.1f): LLR %.2f [%.2f, %.2f], "
+                   + "%s%n", _elo0, _elo1, llr, lowerBound(), upperBound(),
+                   verdict);
+    }
+
+    /** Return the LLR at or below which the SPRT accepts ELO0. */
+    static double lowerBound() {
+        return Math.log(BETA / (1 - ALPHA));
+    }
+
+    /** Return the LLR at or above which the SPRT accepts ELO1. */
+    static double upperBound() {
+        return Math.log((1 - BETA) / ALPHA);
+    }
+
+    /** The settings of one of the AIs in a match. */
+    private static class Entrant {
+
+        /** Apply the option NAME=VALUE (VALUE null if there is no
+         *  '=...') to me, returning false if NAME is not an AI
+         *  option. */
+        boolean option(String name, String value) throws IOException {
+            switch (name) {
+            case "depth":
+                _depth = Math.max(1, Integer.parseInt(value));
+                return true;
+            case "time":
+                _timeLimit = Long.parseLong(value);
+                return true;
+            case "weights":
+                try (FileReader input = new FileReader(value)) {
+                    _evaluator = PositionalEvaluator.read(input);
+                }
+                return true;
+            case "no-reductions":
+                _reductions = false;
+                return true;
+            case "no-futility":
+                _futility = false;
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        /** Return an AI with my settings, playing COLOR in GAME. */
+        AI player(Game game, PieceColor color) {
+            AI ai = new AI(game, color);
+            if (_depth > 0) {
+                ai.setDepth(_depth);
+            }
+            ai.setTimeLimit(_timeLimit);
+            ai.setEvaluator(_evaluator);
+            ai.setReductions(_reductions);
+            ai.setFutility(_futility);
+            return ai;
+        }
+
+        /** Search depth, or 0 for the AI's default. */
+        private int _depth;
+        /** Time limit per move (milliseconds), or 0 for none. */
+        private long _timeLimit;
+        /** Evaluator for the AI. */
+        private Evaluator _evaluator = Main.evaluator();
+        /** True iff the AI uses late move reductions. */
+        private boolean _reductions = Main.reductions();
+        /** True iff the AI uses futility pruning. */
+        private boolean _futility = Main.futility();
+    }
+
+    /** The Games and AIs with which a thread plays its games. */
+    private class Table {
+
+        /** A new Table, with fresh Games. */
+        Table() {
+            for (int e = 0; e < _entrants.length; e += 1) {
+                _games[e] = new Game(new Board(),
+                                     new ReaderSource(new StringReader(""),
+                                                      false),
+                                     new NullReporter());
+                for (PieceColor color : new PieceColor[] { WHITE, BLACK }) {
+                    _players[e][color.ordinal()] =
+                        _entrants[e].player(_games[e], color);
+                }
+            }
+        }
+
+        /** The Games of A and B, whose boards are kept identical. */
+        private final Game[] _games = new Game[2];
+        /** _players[E][C] plays the color with ordinal C for the entrant
+         *  with index E (0 for A, 1 for B). */
+        private final AI[][] _players =
+            new AI[2][PieceColor.values().length];
+    }
+
+    /** Form of an option: an optional entrant prefix, a name, and an
+     *  optional value. */
+    private static final Pattern OPTION =
+        Pattern.compile("--(?:([ab])-)?([a-z][a-z0-9-]*)(?:=(.+))?");
+
+    /** Normal deviate for a two-sided 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    /** Number of games between progress reports. */
+    private static final int PROGRESS_INTERVAL = 100;
+
+    /** The settings of A and B. */
+    private final Entrant[] _entrants = new Entrant[2];
+    /** Number of games played at once. */
+    private int _parallel = Runtime.getRuntime().availableProcessors();
+    /** Seed for openings. */
+    private long _seed;
+    /** Opening book, or null for random openings. */
+    private OpeningBook _book;
+    /** Number of random moves in openings without a book. */
+    private int _randomMoves = 8;
+    /** The SPRT's hypotheses. */
+    private double _elo0 = 0, _elo1 = 10;
+    /** Results so far, from A's point of view. */
+    private int _wins, _draws, _losses;
+    /** True once the SPRT has concluded. */
+    private volatile boolean _stopped;
+    /** Where progress is reported. */
+    private PrintStream _log;
+
+}
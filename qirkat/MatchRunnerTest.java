@@ -0,0 +1,107 @@
+package qirkat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MatchRunner.
+ *  @author andrew
+ */
+public class MatchRunnerTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testElo() {
+        assertEquals(0, MatchRunner.elo(0.5), EPSILON);
+        assertEquals(0.5, MatchRunner.expectedScore(0), EPSILON);
+        assertEquals(100, MatchRunner.elo(MatchRunner.expectedScore(100)),
+                     EPSILON);
+        assertTrue(MatchRunner.elo(0.6) > 0);
+    }
+
+    @Test
+    public void testLLR() {
+        assertEquals(0, MatchRunner.llr(0, 0, 0, 0, 10), EPSILON);
+        assertTrue(MatchRunner.llr(0, 7, 0, 0, 10) < 0);
+        assertTrue(MatchRunner.llr(600, 200, 400, 0, 10) > 0);
+        assertTrue(MatchRunner.llr(400, 200, 600, 0, 10) < 0);
+        assertTrue(MatchRunner.llr(1200, 400, 800, 0, 10)
+                   > MatchRunner.llr(600, 200, 400, 0, 10));
+    }
+
+    @Test
+    public void testAllWins() {
+        assertTrue(MatchRunner.llr(100, 0, 0, 0, 10)
+                   >= MatchRunner.upperBound());
+        assertTrue(MatchRunner.llr(1, 0, 0, 0, 10)
+                   < MatchRunner.upperBound());
+        double elo = MatchRunner.elo(MatchRunner.clamp(1.0, 100));
+        assertTrue(elo > 0 && !Double.isInfinite(elo));
+        assertTrue(MatchRunner.variance(100, 0, 0) > 0);
+        double upper = MatchRunner.clamp(1.1, 100);
+        assertEquals(elo, MatchRunner.elo(upper), EPSILON);
+    }
+
+    @Test
+    public void testAllLosses() {
+        assertTrue(MatchRunner.llr(0, 0, 100, 0, 10)
+                   <= MatchRunner.lowerBound());
+        assertTrue(MatchRunner.llr(0, 0, 1, 0, 10)
+                   > MatchRunner.lowerBound());
+        double elo = MatchRunner.elo(MatchRunner.clamp(0.0, 100));
+        assertTrue(elo < 0 && !Double.isInfinite(elo));
+        assertEquals(-elo, MatchRunner.elo(MatchRunner.clamp(1.0, 100)),
+                     EPSILON);
+        double lower = MatchRunner.clamp(-0.1, 100);
+        assertEquals(elo, MatchRunner.elo(lower), EPSILON);
+    }
+
+    @Test
+    public void testMatch() throws IOException {
+        MatchRunner runner = new MatchRunner();
+        runner.option("--depth=1");
+        runner.option("--b-no-futility");
+        runner.option("--parallel=2");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(out);
+        runner.run(4, stream, stream);
+        stream.flush();
+        assertEquals(4, runner.gamesPlayed());
+        assertTrue(out.toString().startsWith("Games: 4"));
+    }
+
+    @Test
+    public void testOpenings() throws IOException {
+        MatchRunner runner = new MatchRunner();
+        runner.option("--random=2");
+        HashSet<Long> positions = new HashSet<>();
+        for (ArrayList<Move> opening : runner.openings(5)) {
+            Board board = new Board();
+            for (Move mov : opening) {
+                board.makeMove(mov);
+            }
+            assertEquals(2, opening.size());
+            positions.add(board.key());
+        }
+        assertEquals(5, positions.size());
+    }
+
+    @Test(expected = GameException.class)
+    public void testTooFewOpenings() throws IOException {
+        MatchRunner runner = new MatchRunner();
+        runner.option("--random=2");
+        runner.openings(6);
+    }
+
+    @Test(expected = GameException.class)
+    public void testBadOption() throws IOException {
+        new MatchRunner().option("--a-book=x");
+    }
+
+}
@@ -0,0 +1,26 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+
+/** An Evaluator whose value is the number of White's pieces less the
+ *  number of Black's.
+ *  @author andrew
+ */
+class MaterialEvaluator implements Evaluator {
+
+    @Override
+    public int pieceValue(PieceColor color, int k) {
+        return color == WHITE ? 1 : -1;
+    }
+
+    @Override
+    public int materialValue() {
+        return 1;
+    }
+
+    @Override
+    public int score(Board board) {
+        return board.pieceValues(this);
+    }
+
+}
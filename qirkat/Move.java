@@ -3,12 +3,9 @@ package qirkat;
 import static java.lang.Math.abs;
 
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
-import java.util.ArrayList;
-import java.util.HashSet;
 
 
 /** Represents a Qirkat move. There is one Move object created for
@@ -43,23 +40,19 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
-     */
+    /* Since the board is small, there are few enough single moves and
+     * jumps (including impossible ones such as a1-e5) that we create all
+     * of them when the class is loaded, in the table SINGLES, indexed by
+     * starting and ending square.  A multiple jump consists of a single
+     * jump (its head) followed by another Move (its tail).  Each jump
+     * has a table of the multiple jumps of which it is the tail, indexed
+     * by the starting square of their heads, which the factory fills in
+     * as needed.  Entries of these tables are never changed once set, and
+     * are set with compareAndSet, so that when two threads create the
+     * same multiple jump at once, one of them discards its copy and both
+     * return the other.  Thus, none of the factory methods requires a
+     * lock, and any number of threads (such as those of a parallel AI)
+     * may create Moves at the same time. */
 
     /** The move constructor, made private to prevent its use except in
      *  this class. */
@@ -69,27 +62,41 @@ class Move {
     /** A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      *  followed by NEXTJUMP, if this move is a jump. Assumes the column
      *  and row designations are valid and that NEXTJUMP is null for a
-     *  non-capturing move.  Not thread-safe. */
+     *  non-capturing move. */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
-        }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        return move(index(col0, row0), index(col1, row1), nextJump);
+    }
+
+    /** Return the Move from the square with linearized index FROM to that
+     *  with index TO, followed by NEXTJUMP, as for move(COL0, ROW0, COL1,
+     *  ROW1, NEXTJUMP). */
+    static Move move(int from, int to, Move nextJump) {
+        Move head = move(from, to);
+        if (nextJump == null) {
+            return head;
+        } else if (!head.isJump() || !nextJump.isJump()) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        AtomicReferenceArray<Move> chains = nextJump._chains;
+        Move result = chains.get(head._fromIndex);
+        if (result == null) {
+            result = new Move();
+            result.set(col(from), row(from), col(to), row(to), nextJump);
+            if (!chains.compareAndSet(head._fromIndex, null, result)) {
+                result = chains.get(head._fromIndex);
+            }
         }
         return result;
     }
 
-    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     *  Not thread-safe. */
+    /** Return the single move or jump from the square with linearized
+     *  index FROM to that with index TO. */
+    static Move move(int from, int to) {
+        return SINGLES[from][to];
+    }
+
+    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1). */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
@@ -279,6 +286,19 @@ class Move {
         return _nextJump;
     }
 
+    /** Return the linearized index of the square on which this move
+     *  finally ends (the destination of the last jump, for a multiple
+     *  jump). */
+    int finalIndex() {
+        return _finalIndex;
+    }
+
+    /** Return the set of squares whose pieces this move captures, as a
+     *  mask with bit K set for each captured square K. */
+    int captures() {
+        return _captures;
+    }
+
     @Override
     public int hashCode() {
         return (_fromIndex << 5) | _toIndex;
@@ -367,154 +387,8 @@ class Move {
 
         return output;
     }
-    /**Add move MOVES STARTCOL STARTROW ENDCOL ENDROW NEXT.*/
-    static void addMove(ArrayList<Move> moves,
-                        char startCol,
-                        char startRow,
-                        char endCol,
-                        char endRow,
-                        Move next) {
-        Move temp = new Move();
-        temp.set(startCol, startRow, endCol, endRow, next);
-        moves.add(temp);
-    }
-    /**Helper, left is in code MOVES K B STARTCOL STARTROW ENDCOL ENDROW.*/
-    static void rightHelper(ArrayList<Move> moves, int k, Board b,
-                            char startCol, char startRow,
-                            char endCol, char endRow) {
-        if (endCol <= 'e') {
-            String right = Character.toString(endCol)
-                    + Character.toString(startRow);
-            if (b.board().get(right).equals(PieceColor.EMPTY)) {
-                addMove(moves, startCol, startRow, endCol, endRow, null);
-            }
-        }
-    }
-    /**Clean MOVES K B.*/
-    static void cleanGetMovesHelper(ArrayList<Move> moves, int k, Board b) {
-        String curr = Board.linToHash(k);
-        if (!b.board().get(curr).equals(b.whoseMove())) {
-            return;
-        }
-        char startCol = curr.charAt(0);
-        char startRow = curr.charAt(1);
-        char endCol = startCol;
-        char endRow = startRow;
-        endCol--;
-        if (endCol >= 'a') {
-            String left = Character.toString(endCol)
-                    + Character.toString(startRow);
-            if (b.board().get(left).equals(PieceColor.EMPTY)) {
-                addMove(moves, startCol, startRow, endCol, endRow, null);
-            }
-        }
-        endCol++;
-        endCol++;
-        rightHelper(moves, k, b, startCol, startRow, endCol, endRow);
-        endCol--;
-        if (b.whoseMove().equals(PieceColor.WHITE)) {
-            endRow++;
-        } else if (b.whoseMove().equals(PieceColor.BLACK)) {
-            endRow--;
-        }
-        if (endRow >= '1' && endRow <= '5') {
-            String updown = Character.toString(startCol)
-                    + Character.toString(endRow);
-            if (b.board().get(updown).equals(PieceColor.EMPTY)) {
-                addMove(moves, startCol, startRow, endCol, endRow, null);
-            }
-        }
-        if ((startCol + startRow) % 2 == 0) {
-            endCol--;
-            String topleft = Character.toString(endCol)
-                    + Character.toString(endRow);
-            if (endRow >= '1' && endRow <= '5') {
-                if (endCol >= 'a') {
-                    if (b.board().get(topleft).equals(PieceColor.EMPTY)) {
-                        addMove(moves, startCol,
-                                startRow, endCol, endRow, null);
-                    }
-                }
-                endCol++;
-                endCol++;
-                if (endCol <= 'e') {
-                    String topright = Character.toString(endCol)
-                            + Character.toString(endRow);
-                    if (b.board().get(topright).equals(PieceColor.EMPTY)) {
-                        addMove(moves, startCol,
-                                startRow, endCol, endRow, null);
-                    }
-                }
-            }
-        }
-    }
-    /**Single jump MOVES B STARTCOL STARTROW ENDCOL ENDROW.*/
-    static void addSingleJumpIfLegal(ArrayList<Move> moves, Board b,
-                                     char startCol, char startRow,
-                                     char endCol, char endRow) {
-
-        if (validSquare(endCol, endRow)) {
-
-            char midCol = b.middleChar(startCol, endCol);
-            char midRow = b.middleChar(startRow, endRow);
-            String middle = Character.toString(midCol)
-                    + Character.toString(midRow);
-            if (!b.board().get(middle).equals(b.whoseMove().opposite())) {
-
-                return;
-            }
-            String end = Character.toString(endCol)
-                    + Character.toString(endRow);
-            if (!b.board().get(end)
-                    .equals(PieceColor.EMPTY)) {
-
-                return;
-            }
-            addMove(moves, startCol, startRow, endCol, endRow, null);
-        }
-
-    }
-    /**CLEAN JUMP MOVES K B.*/
-    static void cleanGetSingleJumpHelper(
-            ArrayList<Move> moves, int k, Board b) {
-        String curr = Board.linToHash(k);
-        if (!b.board().get(curr).equals(b.whoseMove())) {
-
-            return;
-        }
-        char startCol = curr.charAt(0);
-        char startRow = curr.charAt(1);
-        char colPlus = startCol;
-        colPlus++;
-        colPlus++;
-        char rowPlus = startRow;
-        rowPlus++;
-        rowPlus++;
-        char colMinus = startCol;
-        colMinus--;
-        colMinus--;
-        char rowMinus = startRow;
-        rowMinus--;
-        rowMinus--;
-
-        addSingleJumpIfLegal(moves, b, startCol, startRow, startCol, rowPlus);
-        addSingleJumpIfLegal(moves, b, startCol, startRow, startCol, rowMinus);
-        addSingleJumpIfLegal(moves, b, startCol, startRow, colPlus, startRow);
-        addSingleJumpIfLegal(moves, b, startCol, startRow, colMinus, startRow);
-
-        if ((startCol + startRow) % 2 == 0) {
-            addSingleJumpIfLegal(
-                    moves, b, startCol, startRow, colPlus, rowPlus);
-            addSingleJumpIfLegal(
-                    moves, b, startCol, startRow, colPlus, rowMinus);
-            addSingleJumpIfLegal(
-                    moves, b, startCol, startRow, colMinus, rowPlus);
-            addSingleJumpIfLegal(
-                    moves, b, startCol, startRow, colMinus, rowMinus);
-
-        }
-    }
-    /**Return size of MOV.*/
+    /** Return the number of single jumps in MOV, or 1 for a
+     *  non-capturing move, or 0 if MOV is null. */
     static int moveSize(Move mov) {
         if (mov == null) {
             return 0;
@@ -522,583 +396,6 @@ class Move {
         return 1 + moveSize(mov._nextJump);
     }
 
-    /**Not used RESULT BOARD K.*/
-    static void cchainJump(ArrayList<Move> result, Board board, int k) {
-
-        ArrayList<Move> temp = new ArrayList<Move>();
-        ArrayList<Move> singleJump = new ArrayList<Move>();
-        Board tempBoard = new Board(board);
-
-        cleanGetSingleJumpHelper(singleJump, k, tempBoard);
-
-        for (Move m : singleJump) {
-            if (board.legalMove(m)) {
-                tempBoard = new Board(board);
-                tempBoard.actuallyMakeMove(m);
-                if (!tempBoard.jumpPossible()) {
-                    result.add(m);
-                } else {
-                    temp.add(m);
-                }
-            }
-
-        }
-
-    }
-    /**Returns list of possible next jumps from B K.*/
-    static ArrayList<Move> nextJump(Board b, int k) {
-        ArrayList<Move> result = new ArrayList<Move>();
-
-        ArrayList<Move> singleJump = new ArrayList<Move>();
-        cleanGetSingleJumpHelper(singleJump, k, b);
-        for (Move m : singleJump) {
-            result.add(m);
-        }
-
-        return result;
-    }
-
-    /**Final chain jump RESULT BOARD K.*/
-    static void finalChainJump(ArrayList<Move> result, Board board, int k) {
-        ArrayList<Move> jumps = finalChainJumpHelper(board, k);
-        for (Move m : jumps) {
-            result.add(m);
-        }
-    }
-
-    /**Unused helper RESULT K B.*/
-    static void finalSingleJumpHelper(ArrayList<Move> result, int k, Board b) {
-        if (!b.jumpPossible()) {
-            return;
-        }
-        char col = col(k);
-        char row = row(k);
-
-
-    }
-
-    /**Final chain jump helper Return arraylist based off B K.*/
-    static ArrayList<Move> finalChainJumpHelper(Board b, int k) {
-        ArrayList<Move> result = new ArrayList<Move>();
-
-        if (!b.jumpPossible()) {
-            result.add(null);
-            return result;
-        } else {
-            ArrayList<Move> jump = new ArrayList<Move>();
-
-            cleanGetSingleJumpHelper(jump, k, b);
-
-            for (Move m : jump) {
-                Board temp = new Board(b);
-                temp.actuallyMakeMove(m);
-                int nextIndex = index(m.col1(), m.row1());
-                ArrayList<Move> next = finalChainJumpHelper(temp, nextIndex);
-                if (next.size() == 0) {
-
-                    next.add(null);
-                }
-                for (Move nextMove : next) {
-                    result.add(move(m.col0(), m.row0(), m.col1(),
-                            m.row1(), nextMove));
-                }
-            }
-
-            return result;
-        }
-    }
-
-    /**chain jump RESULT BOARD K.*/
-    static void cChainJump(ArrayList<Move> result, Board board, int k) {
-        ArrayList<Move> nextJump = nextJump(board, k);
-        ArrayList<Move> temp = new ArrayList<Move>(nextJump);
-        for (Move m : temp) {
-            if (!board.legalMove(m)) {
-                nextJump.remove(m);
-            }
-        }
-
-        for (Move m : nextJump) {
-            Board tempBoard = new Board(board);
-            tempBoard.makeMove(m);
-            if (!tempBoard.jumpPossible()) {
-                result.add(m);
-            } else {
-                char col = m.col1();
-                char row = m.row1();
-                int index = index(col, row);
-                ArrayList<Move> nextNextJump = nextJump(tempBoard, index);
-                for (Move m1 : nextNextJump) {
-                    Board tempBoard1 = new Board(tempBoard);
-                    tempBoard.makeMove(m1);
-                    if (!tempBoard1.jumpPossible()) {
-                        Move toAdd = move(m.col0(), m.row0(),
-                                m.col1(), m.row1(), m1);
-                        System.out.println(toAdd);
-                        result.add(toAdd);
-                    } else {
-                        int i;
-                    }
-                }
-            }
-        }
-    }
-
-    /**Chain jump RESULT BOARD I.*/
-    static void chainJump(ArrayList<Move> result, Board board, int i) {
-        if (!board.jumpPossible()) {
-            return;
-        }
-        PieceColor currPlayer = board.whoseMove();
-        ArrayList<Move> singleJumps = new ArrayList<Move>();
-        String pos = board.linToHash(i);
-        if (board.board().get(pos).equals(currPlayer)) {
-            char col = pos.charAt(0);
-            char row = pos.charAt(1);
-            int k = index(col, row);
-            cleanGetSingleJumpHelper(singleJumps, k, board);
-        }
-
-        if (singleJumps.size() == 0) {
-            return;
-        }
-
-        result.addAll(singleJumps);
-
-        for (Move mov : singleJumps) {
-            Board temp = new Board(board);
-            temp.actuallyMakeMove(mov);
-            char endCol = mov.col1();
-            char endRow = mov.row1();
-            int k = index(endCol, endRow);
-            ArrayList<Move> nextSingleJump = new ArrayList<Move>();
-            cleanGetSingleJumpHelper(nextSingleJump, k, temp);
-
-            if (nextSingleJump.size() > 0) {
-                for (Move nextMove : nextSingleJump) {
-                    result.add(move(mov.col0(), mov.row0(),
-                            mov.col1(), mov.row1(), nextMove));
-                    chainJumpHelper(result, temp);
-                }
-            }
-        }
-
-    }
-    /**Helper for chainjumps RESULT B.*/
-    static void chainJumpHelper(ArrayList<Move> result, Board b) {
-        ArrayList<Move> resultTemp = new ArrayList<Move>(result);
-        for (Move m : resultTemp) {
-            Move temp = getLastJump(m);
-
-            Board tempB = new Board(b);
-            tempB.actuallyMakeMove(temp);
-            char endCol = temp.col1();
-            char endRow = temp.row1();
-            int k = index(endCol, endRow);
-            ArrayList<Move> nextSingleJump = new ArrayList<Move>();
-            cleanGetSingleJumpHelper(nextSingleJump, k, tempB);
-
-            if (nextSingleJump.size() > 0) {
-                for (Move nextMove : nextSingleJump) {
-                    result.add(move(temp.col0(), temp.row0(),
-                            temp.col1(), temp.row1(), nextMove));
-                    chainJumpHelper(result, tempB);
-                }
-            }
-
-        }
-    }
-
-    /**Return true last jump of MOV.*/
-    static Move getLastJump(Move mov) {
-        Move temp = mov;
-        while (temp != null && temp._nextJump != null) {
-            temp = temp._nextJump;
-        }
-        return temp;
-    }
-
-    /** Checks if this is base case, otherwise chains more jumps.
-     * MOVES K B STARTCOL STARTROW ENDCOL ENDROW*/
-    static void chainJumpHelper(ArrayList<Move> moves, int k, Board b,
-                          char startCol, char startRow,
-                          char endCol, char endRow) {
-
-
-        Board copy = new Board(b);
-        ArrayList<Move> nextMoves = new ArrayList<Move>();
-        int next = index(endCol, endRow);
-        cleanGetSingleJumpHelper(nextMoves, next, copy);
-        if (nextMoves.size() == 0) {
-            cleanGetSingleJumpHelper(moves, k, b);
-        } else {
-            int i;
-        }
-    }
-    /**Chain jump STARTCOL STARTROW ENDCOL ENDROW RESULT B.*/
-    static void resultChainJumpHelper(char startCol, char startRow,
-                                      char endCol, char endRow,
-                                      ArrayList<Move> result, Board b) {
-        if (endCol >= 'a' && endCol <= 'e' && endRow >= '1' && endRow <= '5') {
-            Board copyBoard = new Board(b);
-
-            char middleCol = copyBoard.middleChar(startCol, endCol);
-            char middleRow = copyBoard.middleChar(startRow, endRow);
-            String middle = Character.toString(middleCol)
-                    + Character.toString(middleRow);
-            if (!copyBoard.board().get(middle)
-                    .equals(copyBoard.whoseMove().opposite())) {
-                return;
-            }
-            String end = Character.toString(endCol)
-                    + Character.toString(endRow);
-            if (!copyBoard.board().get(end).equals(PieceColor.EMPTY)) {
-                return;
-            }
-            copyBoard.board().put(middle, PieceColor.EMPTY);
-            copyBoard.board().put(end, b.whoseMove());
-            ArrayList<Move> future =
-                    generateChainJumps(endCol, endRow, copyBoard);
-            if (future.size() == 0) {
-                future.add(null);
-            }
-            for (Move m : future) {
-                Move curr = new Move();
-                curr.set(startCol, startRow, endCol, endRow, m);
-                result.add(curr);
-            }
-        }
-    }
-    /**Get jumps MOVES K B.*/
-    static void testGetJumps(ArrayList<Move> moves, int k, Board b) {
-        testGetJumpsHelper(moves, k, b, 12);
-
-
-    }
-    /**Get jumps MOVES K B I.*/
-    static void testGetJumpsHelper(
-            ArrayList<Move> moves, int k, Board b, int i) {
-        if (i == 0) {
-            moves.add(null);
-            return;
-        }
-        String curr = Board.linToHash(k);
-        char startCol = curr.charAt(0);
-        char startRow = curr.charAt(1);
-        char colPlus = startCol;
-        colPlus++;
-        colPlus++;
-        char rowPlus = startRow;
-        rowPlus++;
-        rowPlus++;
-        char colMinus = startCol;
-        colMinus--;
-        colMinus--;
-        char rowMinus = startRow;
-        rowMinus--;
-        rowMinus--;
-        if (!b.board().get(curr).equals(b.whoseMove())) {
-            return;
-        }
-
-        char[] columns = {colMinus, startCol, colPlus};
-        char[] rows = {rowMinus, startRow, rowPlus};
-
-        for (char c: columns) {
-            for (char r: rows) {
-
-                if (c >= 'a' && c <= 'e' && r >= '1' && r <= '5') {
-                    ArrayList<Move> temp = new ArrayList<Move>();
-
-                    System.out.println(b.toString());
-                    testGetJumpsHelper(temp, index(c, r), b, i - 1);
-                    for (Move m : temp) {
-                        if (b.legalMove(m)) {
-                            addMove(moves, startCol, startRow, c, r, m);
-                        }
-                    }
-                }
-            }
-        }
-    }
-    /**Chain jumps STARTCOL STARTROW B RETURN ArrayList.*/
-    static ArrayList<Move> generateChainJumps(
-            char startCol, char startRow, Board b) {
-        ArrayList<Move> result = new ArrayList<Move>();
-
-        char colPlus = startCol;
-        colPlus++;
-        colPlus++;
-        char rowPlus = startRow;
-        rowPlus++;
-        rowPlus++;
-        char colMinus = startCol;
-        colMinus--;
-        colMinus--;
-        char rowMinus = startRow;
-        rowMinus--;
-        rowMinus--;
-
-        resultChainJumpHelper(
-                startCol, startRow, startCol, rowPlus, result, b);
-        resultChainJumpHelper(
-                startCol, startRow, startCol, rowMinus, result, b);
-        resultChainJumpHelper(
-                startCol, startRow, colPlus, startRow, result, b);
-        resultChainJumpHelper(
-                startCol, startRow, colMinus, startRow, result, b);
-
-
-
-        if ((startCol + startRow) % 2 == 0) {
-            resultChainJumpHelper(
-                    startCol, startRow, colPlus, rowPlus, result, b);
-            resultChainJumpHelper(
-                    startCol, startRow, colPlus, rowMinus, result, b);
-            resultChainJumpHelper(
-                    startCol, startRow, colMinus, rowPlus, result, b);
-            resultChainJumpHelper(
-                    startCol, startRow, colMinus, rowMinus, result, b);
-        }
-        return result;
-    }
-    /**Clean chain jump MOVES K B.*/
-    static void cleanChainJumpHelper(ArrayList<Move> moves, int k, Board b) {
-        String curr = Board.linToHash(k);
-        if (!b.board().get(curr).equals(b.whoseMove())) {
-
-            return;
-        }
-
-        char startCol = curr.charAt(0);
-        char startRow = curr.charAt(1);
-        char colPlus = startCol;
-        colPlus++;
-        colPlus++;
-        char rowPlus = startRow;
-        rowPlus++;
-        rowPlus++;
-        char colMinus = startCol;
-        colMinus--;
-        colMinus--;
-        char rowMinus = startRow;
-        rowMinus--;
-        rowMinus--;
-    }
-
-    /**All single moves RETURN ArrayList.*/
-    static ArrayList<Move> generateAllSingleJumpMoves() {
-
-        ArrayList<Move> result = new ArrayList<Move>();
-        for (char r = '1'; r <= '5'; r++) {
-            for (char c = 'a'; c <= 'e'; c++) {
-                char rMinus = r;
-                rMinus--;
-                rMinus--;
-                char cMinus = c;
-                cMinus--;
-                cMinus--;
-                char rPlus = r;
-                rPlus++;
-                rPlus++;
-                char cPlus = c;
-                cPlus++;
-                cPlus++;
-
-                gASJMHelper(result, c, r, rMinus, rPlus, cMinus, cPlus);
-
-            }
-        }
-        return result;
-    }
-
-    /**Helper for above.
-     * RESULT C R RMINUS RPLUS CMINUS CPLUS*/
-    static void gASJMHelper(ArrayList<Move> result, char c, char r,
-                       char rMinus, char rPlus,
-                       char cMinus, char cPlus) {
-        Move temp = new Move();
-        try {
-            temp.set(c, r, c, rMinus, null);
-        } catch (AssertionError e) {
-            int i;
-        }
-        result.add(temp);
-        temp = new Move();
-        try {
-            temp.set(c, r, cMinus, r, null);
-        } catch (AssertionError e) {
-            int i;
-        }
-        result.add(temp);
-        temp = new Move();
-        try {
-            temp.set(c, r, c, rPlus, null);
-        } catch (AssertionError e) {
-            int i;
-        }
-        result.add(temp);
-        temp = new Move();
-        try {
-            temp.set(c, r, cPlus, r, null);
-        } catch (AssertionError e) {
-            int i;
-        }
-        result.add(temp);
-        if ((c + r) % 2 == 0) {
-            temp = new Move();
-            try {
-                temp.set(c, r, cMinus, rMinus, null);
-            } catch (AssertionError e) {
-                int i;
-            }
-            result.add(temp);
-            temp = new Move();
-            try {
-                temp.set(c, r, cMinus, rPlus, null);
-            } catch (AssertionError e) {
-                int i;
-            }
-            result.add(temp);
-            temp = new Move();
-            try {
-                temp.set(c, r, cPlus, rMinus, null);
-            } catch (AssertionError e) {
-                int i;
-            }
-            result.add(temp);
-            temp = new Move();
-            try {
-                temp.set(c, r, cPlus, rPlus, null);
-            } catch (AssertionError e) {
-                int i;
-            }
-            result.add(temp);
-        }
-    }
-
-
-    /**Generate all Multi Jumps from POS RETURN. */
-    static ArrayList<Move> generateAllMultJumps2(int pos) {
-        HashSet<Move> result = new HashSet<Move>();
-        return new ArrayList<>(generateAllMultJumps2(3, result, pos));
-    }
-
-    /**Return hashset of all multijumps from I and RESULT at POS.*/
-    static HashSet<Move> generateAllMultJumps2(int i,
-                                               HashSet<Move> result, int pos) {
-        if (i == 0) {
-            return new HashSet<>(generateAllSingleJumpMoves());
-        }
-        char c = col(pos);
-        char r = row(pos);
-
-        char rMinus = r;
-        rMinus--;
-        rMinus--;
-        char cMinus = c;
-        cMinus--;
-        cMinus--;
-        char rPlus = r;
-        rPlus++;
-        rPlus++;
-        char cPlus = c;
-        cPlus++;
-        cPlus++;
-
-        gAMJHelper(i, result, r, c, rMinus, rPlus, cMinus, cPlus);
-
-
-        return result;
-    }
-
-
-    /**Generate all Multi Jumps RETURN. */
-    static ArrayList<Move> generateAllMultJumps() {
-        HashSet<Move> result = new HashSet<Move>();
-        return new ArrayList<>(generateAllMultJumps(2, result));
-    }
-
-    /**Return hashset of all multijumps from I and RESULT.*/
-    static HashSet<Move> generateAllMultJumps(int i, HashSet<Move> result) {
-        if (i == 0) {
-            return new HashSet<>(generateAllSingleJumpMoves());
-        }
-        for (char r = '1'; r <= '5'; r++) {
-            for (char c = 'a'; c <= 'e'; c++) {
-                char rMinus = r;
-                rMinus--;
-                rMinus--;
-                char cMinus = c;
-                cMinus--;
-                cMinus--;
-                char rPlus = r;
-                rPlus++;
-                rPlus++;
-                char cPlus = c;
-                cPlus++;
-                cPlus++;
-
-                gAMJHelper(i, result, r, c, rMinus, rPlus, cMinus, cPlus);
-
-            }
-        }
-        return result;
-    }
-    /** Helper for the function right above.
-     * I RESULT R C RMINUS RPLUS CMINUS CPLUS.*/
-    static void gAMJHelper(int i, HashSet<Move> result,
-                           char r, char c,
-                           char rMinus, char rPlus,
-                           char cMinus, char cPlus) {
-        ArrayList<Move> old =
-                new ArrayList<>(generateAllMultJumps(i - 1, result));
-        for (Move m : old) {
-            Move temp = new Move();
-            if (m.col0() == c && m.row0() == rMinus) {
-                temp.set(c, r, c, rMinus, m);
-                result.add(temp);
-            }
-            temp = new Move();
-            if (m.col0() == cMinus && m.row0() == r) {
-                temp.set(c, r, cMinus, r, null);
-                result.add(temp);
-            }
-            temp = new Move();
-            if (m.col0() == c && m.row0() == rPlus) {
-                temp.set(c, r, c, rPlus, null);
-                result.add(temp);
-            }
-            temp = new Move();
-            if (m.col0() == cPlus && m.row0() == r) {
-                temp.set(c, r, cPlus, r, null);
-                result.add(temp);
-            }
-            if ((c + r) % 2 == 0) {
-                temp = new Move();
-                if (m.col0() == cMinus && m.row0() == rMinus) {
-                    temp.set(c, r, cMinus, rMinus, null);
-                    result.add(temp);
-                }
-                temp = new Move();
-                if (m.col0() == cMinus && m.row0() == rPlus) {
-                    temp.set(c, r, cMinus, rPlus, null);
-                    result.add(temp);
-                }
-                temp = new Move();
-                if (m.col0() == cPlus && m.row0() == rMinus) {
-                    temp.set(c, r, cPlus, rMinus, null);
-                    result.add(temp);
-                }
-                temp = new Move();
-                if (m.col0() == cPlus && m.row0() == rPlus) {
-                    temp.set(c, r, cPlus, rPlus, null);
-                    result.add(temp);
-                }
-            }
-        }
-    }
-
     /** Set me to COL0 ROW0 - COL1 ROW1 - NEXTJUMP. */
     private void set(char col0, char row0, char col1, char row1,
                      Move nextJump) {
@@ -1112,6 +409,15 @@ class Move {
         _toIndex = (byte) index(col1, row1);
         _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
         _nextJump = nextJump;
+        if (_isJump) {
+            _chains = new AtomicReferenceArray<>(MAX_INDEX + 1);
+        }
+        _finalIndex = nextJump == null ? _toIndex : nextJump._finalIndex;
+        _captures = nextJump == null ? 0 : nextJump._captures;
+        if (_isJump && Geometry.JUMPED[_fromIndex][_toIndex]
+            != Geometry.NO_SQUARE) {
+            _captures |= 1 << Geometry.JUMPED[_fromIndex][_toIndex];
+        }
         assert (_isJump
                 && (nextJump == null
                     || (nextJump.isJump()
@@ -1123,6 +429,12 @@ class Move {
     /** Linearized indices. */
     private byte _fromIndex, _toIndex;
 
+    /** Square on which the whole move ends. */
+    private byte _finalIndex;
+
+    /** Mask of the squares captured by the whole move. */
+    private int _captures;
+
     /** True iff move is a jump. */
     private boolean _isJump;
 
@@ -1133,17 +445,24 @@ class Move {
      *  initial jump. */
     private Move _nextJump;
 
-    /* Used for the Move factory. */
+    /** For a jump, the multiple jumps whose tail is this Move, indexed
+     *  by the starting square of their first jumps; null otherwise. */
+    private AtomicReferenceArray<Move> _chains;
 
-    /** Holds the next Move object to be added to _internedMoves.
-     *  The factory method move tentatively fills it in, and then returns
-     *  it if it is unique (resetting _staged to null). */
-    private static Move _staged;
+    /* Used for the Move factory. */
 
-    /** The set of all distinct moves generated so far. */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    /** SINGLES[K0][K1] is the single move or jump from K0 to K1. */
+    private static final Move[][] SINGLES =
+        new Move[MAX_INDEX + 1][MAX_INDEX + 1];
 
-    /** The identity function on Moves. */
-    static final Function<Move, Move> IDENTITY = k -> k;
+    static {
+        for (int k0 = 0; k0 <= MAX_INDEX; k0 += 1) {
+            for (int k1 = 0; k1 <= MAX_INDEX; k1 += 1) {
+                SINGLES[k0][k1] = new Move();
+                SINGLES[k0][k1].set(col(k0), row(k0), col(k1), row(k1),
+                                    null);
+            }
+        }
+    }
 
 }
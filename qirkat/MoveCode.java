@@ -0,0 +1,160 @@
+package qirkat;
+
+import static qirkat.Move.*;
+
+/** Compact encodings of Moves as longs, used by the move generator and
+ *  the AI's search so that they need not create or look up Move objects.
+ *  A code holds, from the least significant bit:
+ *
+ *      from   (5 bits)  linearized index of the starting square;
+ *      to     (5 bits)  linearized index of the final square;
+ *      legs   (5 bits)  number of single jumps (0 for a non-capturing
+ *                       move);
+ *      jumps  (3 bits each, for each leg in order)  position of the
+ *                       leg's landing square in Geometry.JUMP_TO of the
+ *                       square from which it is made.
+ *
+ *  The squares captured are implied by the jumps, and are computed by
+ *  captures().  Codes denote moves only in the sense of Move.move: the
+ *  legality of a move depends on a Board.  NONE is not the code of any
+ *  move.  Moves cross the boundary between codes and objects through
+ *  toMove and encode.
+ *  @author andrew
+ */
+final class MoveCode {
+
+    /** A code that denotes no move. */
+    static final long NONE = 0;
+
+    /** Maximum number of legs in a code, which is the most any jump
+     *  can have.  Each leg captures a different piece, and all the
+     *  squares a jump lands on have the same column and row parities as
+     *  its start.  On the largest such set of squares (columns a, c, e
+     *  and rows 1, 3, 5) only 16 squares lie between neighbors: 12
+     *  orthogonally and 4 where diagonals cross. */
+    static final int MAX_LEGS = 16;
+
+    /** Field positions and sizes. */
+    private static final int
+        TO_SHIFT = 5,
+        LEGS_SHIFT = 10,
+        JUMPS_SHIFT = 15,
+        JUMP_BITS = 3,
+        SQUARE_MASK = 0x1f,
+        LEGS_MASK = 0x1f,
+        JUMP_MASK = 0x7;
+
+    /** Not instantiable. */
+    private MoveCode() {
+    }
+
+    /** Return the code of the non-capturing move from FROM to TO. */
+    static long step(int from, int to) {
+        return from | (to << TO_SHIFT);
+    }
+
+    /** Return the code of the jump sequence CODE (NONE for a sequence
+     *  of no jumps from FROM) extended by a jump from square FROM, its
+     *  current end, to Geometry.JUMP_TO[FROM][I]. */
+    static long extend(long code, int from, int i) {
+        int legs = code == NONE ? 0 : legs(code);
+        assert legs < MAX_LEGS;
+        if (legs == 0) {
+            code = from;
+        }
+        return (code & ~((long) (SQUARE_MASK << TO_SHIFT)
+                         | ((long) LEGS_MASK << LEGS_SHIFT)))
+            | ((long) Geometry.JUMP_TO[from][i] << TO_SHIFT)
+            | ((long) (legs + 1) << LEGS_SHIFT)
+            | ((long) i << (JUMPS_SHIFT + legs * JUMP_BITS));
+    }
+
+    /** Return the starting square of CODE. */
+    static int from(long code) {
+        return (int) code & SQUARE_MASK;
+    }
+
+    /** Return the final square of CODE. */
+    static int to(long code) {
+        return (int) (code >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /** Return the number of single jumps in CODE (0 if it is not a
+     *  jump). */
+    static int legs(long code) {
+        return (int) (code >>> LEGS_SHIFT) & LEGS_MASK;
+    }
+
+    /** Return true iff CODE is a jump. */
+    static boolean isJump(long code) {
+        return legs(code) != 0;
+    }
+
+    /** Return the set of squares jumped by CODE, as a mask with bit K set
+     *  for each square K. */
+    static int captures(long code) {
+        int result, k;
+        result = 0;
+        k = from(code);
+        long jumps = code >>> JUMPS_SHIFT;
+        for (int n = legs(code); n > 0; n -= 1) {
+            int i = (int) jumps & JUMP_MASK;
+            result |= 1 << Geometry.JUMP_OVER[k][i];
+            k = Geometry.JUMP_TO[k][i];
+            jumps >>>= JUMP_BITS;
+        }
+        return result;
+    }
+
+    /** Return the Move denoted by CODE. */
+    static Move toMove(long code) {
+        int legs = legs(code);
+        if (legs == 0) {
+            return move(from(code), to(code));
+        }
+        int[] path = new int[legs + 1];
+        path[0] = from(code);
+        long jumps = code >>> JUMPS_SHIFT;
+        for (int n = 1; n <= legs; n += 1) {
+            path[n] = Geometry.JUMP_TO[path[n - 1]][(int) jumps & JUMP_MASK];
+            jumps >>>= JUMP_BITS;
+        }
+        Move result;
+        result = null;
+        for (int n = legs; n > 0; n -= 1) {
+            result = move(path[n - 1], path[n], result);
+        }
+        return result;
+    }
+
+    /** Return the code of MOV, or NONE if MOV cannot be encoded (a jump
+     *  with a leg that is not a possible jump on the board, or with more
+     *  than MAX_LEGS legs). */
+    static long encode(Move mov) {
+        if (!mov.isJump()) {
+            return step(mov.fromIndex(), mov.toIndex());
+        }
+        long code;
+        code = NONE;
+        for (Move leg = mov; leg != null; leg = leg.jumpTail()) {
+            int k = leg.fromIndex();
+            int i = indexOf(Geometry.JUMP_TO[k], leg.toIndex());
+            if (i == -1 || !leg.isJump() || legs(code) == MAX_LEGS) {
+                return NONE;
+            }
+            code = extend(code, k, i);
+        }
+        return code;
+    }
+
+    /** Return the position of X in A, or -1 if it is absent. */
+    private static int indexOf(int[] a, int x) {
+        for (int i = 0; i < a.length; i += 1) {
+            if (a[i] == x) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -45,4 +45,42 @@ public class MoveTest {
         assertEquals("a3-a5-c3", parseMove("a3-a5-c3").toString());
         assertEquals("a3-a5-c3-e1", parseMove("a3-a5-c3-e1").toString());
     }
+
+    @Test
+    public void testInterning() throws InterruptedException {
+        assertSame(move('a', '3', 'b', '2'), move(index('a', '3'),
+                                                  index('b', '2')));
+        assertSame(parseMove("a3-a5-c3-e1"), parseMove("a3-a5-c3-e1"));
+
+        final String chain = "e1-c3-a1-a3-c5-e3-e5-c5";
+        final Move[] found = new Move[4];
+        Thread[] threads = new Thread[found.length];
+        for (int k = 0; k < threads.length; k += 1) {
+            final int j = k;
+            threads[k] = new Thread(() -> found[j] = parseMove(chain));
+            threads[k].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Move m : found) {
+            assertSame(found[0], m);
+        }
+        assertEquals(chain, found[0].toString());
+    }
+
+    @Test
+    public void testCodes() {
+        for (String str : new String[] { "a3-b2", "c1-c3", "a1-c1-c3-a3-a1",
+                                         "e1-c3-a1-a3-c5-e3-e5-c5" }) {
+            Move m = parseMove(str);
+            long code = MoveCode.encode(m);
+            assertSame(m, MoveCode.toMove(code));
+            assertEquals(m.fromIndex(), MoveCode.from(code));
+            assertEquals(m.finalIndex(), MoveCode.to(code));
+            assertEquals(m.isJump(), MoveCode.isJump(code));
+            assertEquals(m.captures(), MoveCode.captures(code));
+        }
+        assertEquals(MoveCode.NONE, MoveCode.encode(parseMove("a1-e5")));
+    }
 }
@@ -0,0 +1,21 @@
+package qirkat;
+
+/** A Reporter that discards all messages, for games played without an
+ *  audience (as by MatchRunner or Tuner).
+ *  @author andrew
+ */
+class NullReporter implements Reporter {
+
+    @Override
+    public void errMsg(String format, Object... args) {
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+    }
+
+}
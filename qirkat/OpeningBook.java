@@ -0,0 +1,243 @@
+package qirkat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static qirkat.PieceColor.*;
+
+/** An opening book: moves to play, with weights, for positions near the
+ *  start of the game, found by self-play.  Usage:
+ *
+ *      java qirkat.OpeningBook GAMES PLIES DEPTH FILE
+ *
+ *  plays GAMES games of the AI against itself, searching DEPTH levels
+ *  for each move, and writes to FILE the moves chosen in the first
+ *  PLIES moves of each game.  To vary the games, a random move replaces
+ *  the AI's choice with probability 1/EXPLORATION in that stretch;
+ *  such moves are not recorded.  Each time the AI chooses a move, its
+ *  weight goes up by 1, or by 2 if the player making it goes on to win.
+ *  The 'book' command makes AIs play from a book when they can.
+ *
+ *  A book file contains a magic number, the number of entries, and the
+ *  entries, in increasing order of position key (see Board.key) and
+ *  then move.  An entry is a position's key, the code of a move from it
+ *  (see MoveCode), and the move's weight (a positive int).
+ *  @author andrew
+ */
+class OpeningBook {
+
+    /** Probability that a move in the book phase of a self-play game is
+     *  random is 1/EXPLORATION. */
+    static final int EXPLORATION = 4;
+
+    /** Build a book according to ARGS (see the class comment). */
+    public static void main(String... args) {
+        if (args.length != 4 || !args[0].matches("\\d{1,6}")
+            || !args[1].matches("\\d{1,3}") || !args[2].matches("[1-9]")) {
+            System.err.println("Usage: java qirkat.OpeningBook GAMES PLIES "
+                               + "DEPTH FILE");
+            System.exit(1);
+        }
+        try {
+            build(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                  Integer.parseInt(args[2]), new File(args[3]));
+        } catch (IOException excp) {
+            System.err.printf("Could not write book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Play GAMES self-play games searching DEPTH levels per move, and
+     *  write the book of their first PLIES moves to OUT. */
+    static void build(int games, int plies, int depth, File out)
+        throws IOException {
+        Random random = new Random(BUILD_SEED);
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new NullReporter());
+        AI white = new AI(game, WHITE), black = new AI(game, BLACK);
+        TreeMap<Long, TreeMap<Long, Integer>> weights = new TreeMap<>();
+        for (int g = 0; g < games; g += 1) {
+            playGame(white, black, plies, depth, random, weights);
+        }
+
+        int size;
+        size = 0;
+        for (TreeMap<Long, Integer> moves : weights.values()) {
+            size += moves.size();
+        }
+        try (DataOutputStream output = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(out)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(size);
+            for (long key : weights.keySet()) {
+                TreeMap<Long, Integer> moves = weights.get(key);
+                for (long code : moves.keySet()) {
+                    output.writeLong(key);
+                    output.writeLong(code);
+                    output.writeInt(moves.get(code));
+                }
+            }
+        }
+    }
+
+    /** Play one game between the AIs WHITE and BLACK, searching DEPTH
+     *  levels per move, and add the weights of the moves they choose in
+     *  its first PLIES moves to WEIGHTS, which maps position keys to
+     *  maps from move codes to weights.  Random moves are chosen using
+     *  RANDOM. */
+    private static void playGame(AI white, AI black, int plies, int depth,
+                                 Random random,
+                                 TreeMap<Long, TreeMap<Long, Integer>>
+                                 weights) {
+        Board board = new Board();
+        ArrayList<long[]> chosen = new ArrayList<>();
+        ArrayList<PieceColor> movers = new ArrayList<>();
+        PieceColor winner;
+        for (int n = 0; true; n += 1) {
+            ArrayList<Move> moves = board.getMoves();
+            if (moves.isEmpty()) {
+                winner = board.whoseMove().opposite();
+                break;
+            } else if (n == MAX_GAME_MOVES) {
+                winner = EMPTY;
+                break;
+            }
+            Move mov;
+            if (n < plies && random.nextInt(EXPLORATION) == 0) {
+                mov = moves.get(random.nextInt(moves.size()));
+            } else {
+                AI player = board.whoseMove() == WHITE ? white : black;
+                mov = player.findMove(board, depth);
+                if (n < plies) {
+                    chosen.add(new long[] { board.key(),
+                                            MoveCode.encode(mov) });
+                    movers.add(board.whoseMove());
+                }
+            }
+            board.makeMove(mov);
+        }
+        for (int i = 0; i < chosen.size(); i += 1) {
+            long key = chosen.get(i)[0], code = chosen.get(i)[1];
+            TreeMap<Long, Integer> moves = weights.get(key);
+            if (moves == null) {
+                moves = new TreeMap<>();
+                weights.put(key, moves);
+            }
+            int weight = movers.get(i) == winner ? 2 : 1;
+            moves.put(code, moves.getOrDefault(code, 0) + weight);
+        }
+    }
+
+    /** Return the book in FILE.  Throws an IOException if it cannot be
+     *  read or is not a book. */
+    static OpeningBook read(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not an opening book: " + file);
+            }
+            int size = input.readInt();
+            if (size < 0 || ENTRY_SIZE * (long) size + 2 * Integer.BYTES
+                != file.length()) {
+                throw new IOException("bad opening book: " + file);
+            }
+            OpeningBook book = new OpeningBook(size);
+            for (int i = 0; i < size; i += 1) {
+                book._keys[i] = input.readLong();
+                book._moves[i] = input.readLong();
+                book._weights[i] = input.readInt();
+                if (book._weights[i] <= 0
+                    || (i > 0 && book._keys[i] < book._keys[i - 1])) {
+                    throw new IOException("bad opening book: " + file);
+                }
+            }
+            return book;
+        }
+    }
+
+    /** Return the number of entries in me. */
+    int size() {
+        return _keys.length;
+    }
+
+    /** Return a move for the position on BOARD, chosen from my legal
+     *  moves for it with probabilities proportional to their weights,
+     *  using the random numbers of GAME, or null if I have none. */
+    Move select(Board board, Game game) {
+        long[] legal = new long[Board.TYPICAL_MOVES];
+        int numLegal = board.getMoves(legal, 0);
+        if (numLegal > legal.length) {
+            legal = new long[numLegal];
+            board.getMoves(legal, 0);
+        }
+        Arrays.sort(legal, 0, numLegal);
+        int first = Arrays.binarySearch(_keys, board.key());
+        if (first < 0) {
+            return null;
+        }
+        while (first > 0 && _keys[first - 1] == _keys[first]) {
+            first -= 1;
+        }
+        int total;
+        total = 0;
+        for (int i = first; i < _keys.length && _keys[i] == _keys[first];
+             i += 1) {
+            if (Arrays.binarySearch(legal, 0, numLegal, _moves[i]) >= 0) {
+                total += _weights[i];
+            }
+        }
+        if (total == 0) {
+            return null;
+        }
+        int choice = game.nextRandom(total);
+        for (int i = first; true; i += 1) {
+            if (Arrays.binarySearch(legal, 0, numLegal, _moves[i]) >= 0) {
+                choice -= _weights[i];
+                if (choice < 0) {
+                    return MoveCode.toMove(_moves[i]);
+                }
+            }
+        }
+    }
+
+    /** An empty book with room for SIZE entries. */
+    private OpeningBook(int size) {
+        _keys = new long[size];
+        _moves = new long[size];
+        _weights = new int[size];
+    }
+
+    /** The value identifying book files. */
+    private static final int MAGIC = 0x51424b32;
+
+    /** Size of an entry in a book file (bytes). */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+
+    /** Maximum length of a self-play game, after which it is abandoned
+     *  as unfinished. */
+    private static final int MAX_GAME_MOVES = 200;
+
+    /** Seed of the random numbers used in building books. */
+    private static final long BUILD_SEED = 61;
+
+    /** The entries: _keys[I] is the key of a position, _moves[I] the code
+     *  of a move from it, and _weights[I] its weight, in increasing order
+     *  of key. */
+    private final long[] _keys, _moves;
+    /** See _keys. */
+    private final int[] _weights;
+
+}
@@ -0,0 +1,53 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of opening books.
+ *  @author andrew
+ */
+public class OpeningBookTest {
+
+    @Test
+    public void testBuildAndSelect() throws IOException {
+        File file = File.createTempFile("qirkat", ".bk");
+        try {
+            OpeningBook.build(3, 4, 2, file);
+            OpeningBook book = OpeningBook.read(file);
+            assertTrue(book.size() > 0);
+            Game game = new Game(new Board(),
+                                 new ReaderSource(new StringReader(""),
+                                                  false),
+                                 new NullReporter());
+            Board board = new Board();
+            for (int n = 0; n < 10; n += 1) {
+                Move mov = book.select(board, game);
+                assertNotNull(mov);
+                assertTrue(board.legalMove(mov));
+            }
+            board.makeMove(Move.parseMove("c2-c3"));
+            board.makeMove(Move.parseMove("c4-c2"));
+            board.makeMove(Move.parseMove("c1-c3"));
+            board.makeMove(Move.parseMove("a3-c1"));
+            board.makeMove(Move.parseMove("c3-a3"));
+            assertNull(book.select(board, game));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadBook() throws IOException {
+        File file = File.createTempFile("qirkat", ".bk");
+        try {
+            OpeningBook.read(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+}
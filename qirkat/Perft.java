@@ -0,0 +1,115 @@
+package qirkat;
+
+import java.util.ArrayList;
+
+/** Performance tests ("perft") for the move generator: counts of the
+ *  positions reachable by all sequences of legal moves of a given length.
+ *  Since these counts are known for the initial position, they check the
+ *  generator's correctness as well as measuring its speed.  Usage:
+ *
+ *      java qirkat.Perft DEPTH [divide]
+ *
+ *  counts the positions DEPTH moves from the initial position ("divide"
+ *  also gives the count for each first move).  The same counts are
+ *  available from any position in a game with the 'perft' and 'divide'
+ *  commands.
+ *  @author andrew
+ */
+class Perft {
+
+    /** Not instantiable. */
+    private Perft() {
+    }
+
+    /** Run a perft from the initial position according to ARGS (see
+     *  the class comment). */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 2
+            || !args[0].matches("\\d{1,2}")
+            || (args.length == 2 && !args[1].equals("divide"))) {
+            System.err.println("Usage: java qirkat.Perft DEPTH [divide]");
+            System.exit(1);
+        }
+        report(new Board(), Integer.parseInt(args[0]), args.length == 2,
+               new TextReporter());
+    }
+
+    /** Return the number of sequences of DEPTH legal moves from BOARD
+     *  (the number of leaves of the game tree of that depth, where games
+     *  that end sooner contribute no leaves).  BOARD is unchanged on
+     *  return. */
+    static long perft(Board board, int depth) {
+        long[][] moves = new long[depth + 1][Board.TYPICAL_MOVES];
+        return perft(board, depth, moves);
+    }
+
+    /** Return perft(BOARD, DEPTH), using MOVES[DEPTH] to hold the codes
+     *  of the moves being counted at this level (and MOVES[DEPTH - 1],
+     *  ... for those below), replacing it with a larger array if
+     *  necessary. */
+    private static long perft(Board board, int depth, long[][] moves) {
+        if (depth == 0) {
+            return 1;
+        }
+        int end = board.getMoves(moves[depth], 0);
+        if (depth == 1) {
+            return end;
+        }
+        if (end > moves[depth].length) {
+            moves[depth] = Board.reserve(moves[depth], end);
+            board.getMoves(moves[depth], 0);
+        }
+        long[] codes = moves[depth];
+        long count;
+        count = 0;
+        for (int i = 0; i < end; i += 1) {
+            board.makeMove(codes[i]);
+            count += perft(board, depth - 1, moves);
+            board.undo();
+        }
+        return count;
+    }
+
+    /** Return perft(BOARD, DEPTH) for the position after each legal move
+     *  from BOARD, in the order given by Board.getMoves(), where
+     *  DEPTH >= 1.  The result sums to perft(BOARD, DEPTH + 1). */
+    static long[] divide(Board board, int depth) {
+        ArrayList<Move> moves = board.getMoves();
+        long[] counts = new long[moves.size()];
+        for (int i = 0; i < counts.length; i += 1) {
+            board.makeMove(moves.get(i));
+            counts[i] = perft(board, depth);
+            board.undo();
+        }
+        return counts;
+    }
+
+    /** Report perft(BOARD, DEPTH), the time taken to compute it, and the
+     *  resulting rate, on REPORTER.  If DIVIDE, also report the count for
+     *  each legal move from BOARD.  BOARD is unchanged on return. */
+    static void report(Board board, int depth, boolean divide,
+                       Reporter reporter) {
+        long count;
+        Main.startTiming();
+        if (divide && depth > 0) {
+            ArrayList<Move> moves = board.getMoves();
+            long[] counts = divide(board, depth - 1);
+            count = 0;
+            for (int i = 0; i < counts.length; i += 1) {
+                reporter.moveMsg("%s: %d", moves.get(i), counts[i]);
+                count += counts[i];
+            }
+        } else {
+            count = perft(board, depth);
+        }
+        long time = Main.elapsedTime();
+        Main.endTiming();
+        reporter.outcomeMsg("perft %d: %d positions in %d msec "
+                            + "(%d positions/sec).", depth, count, time,
+                            count * MSEC_PER_SEC / Math.max(time, 1));
+    }
+
+    /** Milliseconds per second. */
+    private static final long MSEC_PER_SEC = 1000;
+
+}
@@ -0,0 +1,64 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the move generator by counting game trees.
+ *  @author andrew
+ */
+public class PerftTest {
+
+    /** PERFT[D] is the number of sequences of D moves from the initial
+     *  position. */
+    private static final long[] PERFT = {
+        1, 4, 5, 6, 12, 27, 97, 416, 1826, 7818, 36283,
+    };
+
+    @Test
+    public void testInitialPerft() {
+        Board b = new Board();
+        String before = b.toString();
+        for (int d = 0; d < PERFT.length; d += 1) {
+            assertEquals("wrong perft " + d, PERFT[d], Perft.perft(b, d));
+        }
+        assertEquals("board changed", before, b.toString());
+        assertEquals("board changed", new Board(), b);
+    }
+
+    @Test
+    public void testDivide() {
+        Board b = new Board();
+        for (int d = 1; d < PERFT.length; d += 1) {
+            long total;
+            total = 0;
+            for (long count : Perft.divide(b, d - 1)) {
+                total += count;
+            }
+            assertEquals("divide does not sum to perft " + d, PERFT[d],
+                         total);
+        }
+    }
+
+    @Test
+    public void testGeneratedMovesLegal() {
+        Board b = new Board();
+        b.setPieces("wbbb- ----b -b-b- b---- -b-b-", PieceColor.WHITE);
+        checkLegal(b, 4);
+        checkLegal(new Board(), 8);
+    }
+
+    /** Check that all moves generated in the game tree of depth DEPTH
+     *  from B are legal, and are maximal if they are jumps. */
+    private void checkLegal(Board b, int depth) {
+        if (depth == 0) {
+            return;
+        }
+        for (Move mov : b.getMoves()) {
+            assertTrue(mov + " not legal", b.legalMove(mov));
+            b.makeMove(mov);
+            checkLegal(b, depth - 1);
+            b.undo();
+        }
+    }
+
+}
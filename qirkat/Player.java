@@ -31,6 +31,11 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Stop any thinking I am doing in the background (as when my game
+     *  ends or I am replaced).  Does nothing by default. */
+    void stop() {
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
@@ -0,0 +1,260 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.Arrays;
+
+import static qirkat.PieceColor.*;
+import static qirkat.GameException.error;
+
+/** An Evaluator with adjustable weights for material, piece placement,
+ *  and mobility.  Each piece is worth
+ *
+ *      material + square[K] + back-rank (if K is on its own first row)
+ *               + center (if K is one of the nine central squares)
+ *
+ *  where square[K] comes from a table for its color, and each side
+ *  also gains mobility for each non-capturing step open to its pieces.
+ *  All but the mobility term are piece values, which Boards maintain
+ *  incrementally.
+ *
+ *  Weights are read from text files, in which each line (after
+ *  removing comments, which start with '#') is empty or has one of
+ *  the forms
+ *
+ *      material N      mobility N      back-rank N     center N
+ *      white N1 ... N25
+ *      black N1 ... N25
+ *
+ *  where the numbers are integers, those of the square tables being in
+ *  order of linearized index (a1, b1, ..., e5).  A weight that is not
+ *  mentioned keeps its default value (see DEFAULT_WEIGHTS).  Values
+ *  favoring Black are positive in Black's table, as for the other
+ *  weights.
+ *
+ *  The weights, in the order material, mobility, back-rank, center,
+ *  White's table, Black's table, also form a vector (see weights()).
+ *  The value of a position is a linear function of the vector, whose
+ *  coefficients are given by features().
+ *  @author andrew
+ */
+class PositionalEvaluator implements Evaluator {
+
+    /** Positions of the weights in a weight vector. */
+    static final int
+        MATERIAL = 0,
+        MOBILITY = 1,
+        BACK_RANK = 2,
+        CENTER = 3,
+        WHITE_SQUARES = 4,
+        BLACK_SQUARES = WHITE_SQUARES + Move.MAX_INDEX + 1,
+        NUM_WEIGHTS = BLACK_SQUARES + Move.MAX_INDEX + 1;
+
+    /** An evaluator with the default weights. */
+    PositionalEvaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /** An evaluator with the weights in vector WEIGHTS, which must
+     *  have length NUM_WEIGHTS. */
+    PositionalEvaluator(int[] weights) {
+        if (weights.length != NUM_WEIGHTS) {
+            throw new IllegalArgumentException("wrong number of weights");
+        }
+        _weights = weights.clone();
+        for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+            _values[WHITE.ordinal()][k] = placement(WHITE, k);
+            _values[BLACK.ordinal()][k] = -placement(BLACK, k);
+        }
+    }
+
+    /** Return an evaluator with the weights read from INPUT, in the
+     *  format described in the class comment.  Throws a GameException
+     *  if the format is wrong. */
+    static PositionalEvaluator read(Reader input) throws IOException {
+        int[] weights = DEFAULT_WEIGHTS.clone();
+        BufferedReader lines = new BufferedReader(input);
+        int lineNum;
+        lineNum = 0;
+        for (String line = lines.readLine(); line != null;
+             line = lines.readLine()) {
+            lineNum += 1;
+            String[] words = line.replaceFirst("#.*", "").trim()
+                .split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            int first, count;
+            switch (words[0]) {
+            case "material":
+                first = MATERIAL;
+                count = 1;
+                break;
+            case "mobility":
+                first = MOBILITY;
+                count = 1;
+                break;
+            case "back-rank":
+                first = BACK_RANK;
+                count = 1;
+                break;
+            case "center":
+                first = CENTER;
+                count = 1;
+                break;
+            case "white":
+                first = WHITE_SQUARES;
+                count = Move.MAX_INDEX + 1;
+                break;
+            case "black":
+                first = BLACK_SQUARES;
+                count = Move.MAX_INDEX + 1;
+                break;
+            default:
+                throw error("unknown weight '%s' on line %d", words[0],
+                            lineNum);
+            }
+            if (words.length != count + 1) {
+                throw error("wrong number of values on line %d", lineNum);
+            }
+            for (int i = 0; i < count; i += 1) {
+                try {
+                    weights[first + i] = Integer.parseInt(words[i + 1]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad weight '%s' on line %d", words[i + 1],
+                                lineNum);
+                }
+            }
+        }
+        return new PositionalEvaluator(weights);
+    }
+
+    /** Write my weights to OUT in the format read by read(). */
+    void write(PrintWriter out) {
+        out.printf("material %d%n", _weights[MATERIAL]);
+        out.printf("mobility %d%n", _weights[MOBILITY]);
+        out.printf("back-rank %d%n", _weights[BACK_RANK]);
+        out.printf("center %d%n", _weights[CENTER]);
+        for (PieceColor color : new PieceColor[] { WHITE, BLACK }) {
+            out.print(color == WHITE ? "white" : "black");
+            int first = color == WHITE ? WHITE_SQUARES : BLACK_SQUARES;
+            for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+                out.print(" " + _weights[first + k]);
+            }
+            out.println();
+        }
+        out.flush();
+    }
+
+    /** Return my weight vector. */
+    int[] weights() {
+        return _weights.clone();
+    }
+
+    @Override
+    public int pieceValue(PieceColor color, int k) {
+        return _values[color.ordinal()][k];
+    }
+
+    @Override
+    public int materialValue() {
+        return Math.max(1, _weights[MATERIAL]);
+    }
+
+    @Override
+    public int score(Board board) {
+        return board.pieceValues(this)
+            + _weights[MOBILITY] * (mobility(board, WHITE)
+                                    - mobility(board, BLACK));
+    }
+
+    /** Set FEATURES[I] to the coefficient of weight I in the value of
+     *  BOARD, for all I < NUM_WEIGHTS, so that score(BOARD) is the sum
+     *  of FEATURES[I] * weights()[I] (for any weights).  */
+    static void features(Board board, int[] features) {
+        Arrays.fill(features, 0, NUM_WEIGHTS, 0);
+        for (PieceColor color : new PieceColor[] { WHITE, BLACK }) {
+            int sign = color == WHITE ? 1 : -1;
+            int first = color == WHITE ? WHITE_SQUARES : BLACK_SQUARES;
+            for (int p = board.pieces(color); p != 0; p &= p - 1) {
+                int k = Integer.numberOfTrailingZeros(p);
+                features[MATERIAL] += sign;
+                features[first + k] += sign;
+                if (isBackRank(color, k)) {
+                    features[BACK_RANK] += sign;
+                }
+                if (isCenter(k)) {
+                    features[CENTER] += sign;
+                }
+            }
+            features[MOBILITY] += sign * mobility(board, color);
+        }
+    }
+
+    /** Return the value of a piece of color COLOR on square K, to
+     *  COLOR. */
+    private int placement(PieceColor color, int k) {
+        int first = color == WHITE ? WHITE_SQUARES : BLACK_SQUARES;
+        int value = _weights[MATERIAL] + _weights[first + k];
+        if (isBackRank(color, k)) {
+            value += _weights[BACK_RANK];
+        }
+        if (isCenter(k)) {
+            value += _weights[CENTER];
+        }
+        return value;
+    }
+
+    /** Return the number of non-capturing steps open to the pieces of
+     *  COLOR on BOARD (ignoring restrictions on moving back
+     *  horizontally, and whether a capture is available). */
+    private static int mobility(Board board, PieceColor color) {
+        int empty = board.emptySquares();
+        int count;
+        count = 0;
+        for (int p = board.pieces(color); p != 0; p &= p - 1) {
+            int k = Integer.numberOfTrailingZeros(p);
+            count += Integer.bitCount(Geometry.stepMask(color, k) & empty);
+        }
+        return count;
+    }
+
+    /** Return true iff square K is on COLOR's first row. */
+    private static boolean isBackRank(PieceColor color, int k) {
+        return Geometry.rowNum(k) == (color == WHITE ? 0 : Move.SIDE - 1);
+    }
+
+    /** Return true iff square K is one of the nine central squares. */
+    private static boolean isCenter(int k) {
+        int c = Geometry.colNum(k), r = Geometry.rowNum(k);
+        return c > 0 && c < Move.SIDE - 1 && r > 0 && r < Move.SIDE - 1;
+    }
+
+    /** The default weights, which favor the squares with diagonal
+     *  connections. */
+    static final int[] DEFAULT_WEIGHTS = new int[NUM_WEIGHTS];
+
+    static {
+        DEFAULT_WEIGHTS[MATERIAL] = 100;
+        DEFAULT_WEIGHTS[MOBILITY] = 2;
+        DEFAULT_WEIGHTS[BACK_RANK] = 4;
+        DEFAULT_WEIGHTS[CENTER] = 6;
+        for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+            if (Geometry.isDiagonal(k)) {
+                DEFAULT_WEIGHTS[WHITE_SQUARES + k] = 3;
+                DEFAULT_WEIGHTS[BLACK_SQUARES + k] = 3;
+            }
+        }
+    }
+
+    /** My weight vector. */
+    private final int[] _weights;
+
+    /** _values[C][K] is pieceValue for the color with ordinal C on
+     *  square K. */
+    private final int[][] _values =
+        new int[PieceColor.values().length][Move.MAX_INDEX + 1];
+
+}
@@ -0,0 +1,386 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static qirkat.PieceColor.*;
+
+/** Endgame tablebases: the exact results, with perfect play, of all
+ *  positions with few pieces, computed by retrograde analysis.  Usage:
+ *
+ *      java qirkat.Tablebase DIRECTORY PIECES [THREADS]
+ *
+ *  writes to DIRECTORY the tables for all positions with at most PIECES
+ *  pieces in all (at most MAX_PIECES), computing them with THREADS
+ *  threads (by default, one per processor).  AIs given the directory
+ *  (by the --tablebases option) consult the tables during their
+ *  searches.
+ *
+ *  There is a table for each number of white and black pieces, giving
+ *  a result for each placement of the pieces and each side to move.
+ *  Placements are numbered by a perfect index: the rank of the set of
+ *  White's squares among all sets of that size (in the combinatorial
+ *  number system), then the rank of Black's among sets of squares not
+ *  occupied by White, then the side to move.  The files hold just the
+ *  result (WIN, LOSS, or DRAW for the side to move) of each position,
+ *  packed and compressed (see TablebaseFile); they are memory-mapped
+ *  and decompressed a block at a time when used.
+ *
+ *  The tables are computed by repeated sweeps over the positions, each
+ *  of which resolves the positions all of whose moves lead to positions
+ *  won for the opponent, or some of whose moves lead to a position lost
+ *  for the opponent, until a sweep resolves nothing; the remaining
+ *  positions are draws.  Positions reached by captures have fewer
+ *  pieces, and so are in tables computed earlier.  While computing
+ *  them, a result is a byte: 0 for a draw, D + 1 if the side to move
+ *  wins in D moves (plies), and -(D + 1) if it loses in D moves.
+ *
+ *  The tables do not account for the rule against moving a piece back
+ *  horizontally (see Board), which would multiply their sizes; their
+ *  results are for positions with no such restrictions, assuming that
+ *  none arise.  AIs therefore consult them only for positions with no
+ *  restrictions, and should treat them as very good estimates rather
+ *  than certainties.
+ *  @author andrew
+ */
+class Tablebase {
+
+    /** The largest number of pieces for which tables may be built. */
+    static final int MAX_PIECES = 7;
+
+    /** Values of probe: the side to move wins, loses, or draws, or the
+     *  position is not in the tables. */
+    static final int WIN = 1, LOSS = -1, DRAW = 0, UNKNOWN = 2;
+
+    /** Number of decompressed blocks that probes keep in memory. */
+    static final int CACHE_BLOCKS = 1024;
+
+    /** Return the tables in DIRECTORY, which must include those for all
+     *  positions with at most PIECES pieces for some PIECES >= 1, mapping
+     *  them into memory. */
+    static Tablebase load(File directory) throws IOException {
+        Tablebase result = new Tablebase();
+        for (int n = 1; n <= MAX_PIECES; n += 1) {
+            TablebaseFile[] tables = new TablebaseFile[n + 1];
+            for (int white = 0; white <= n; white += 1) {
+                File file = new File(directory, fileName(white, n - white));
+                if (!file.exists()) {
+                    tables = null;
+                    break;
+                }
+                tables[white] =
+                    new TablebaseFile(file, white, n - white, result._cache);
+            }
+            if (tables == null) {
+                break;
+            }
+            for (int white = 0; white <= n; white += 1) {
+                result._tables[signature(white, n - white)] = tables[white];
+            }
+            result._maxPieces = n;
+        }
+        if (result._maxPieces == 0) {
+            throw new IOException("no tablebases in " + directory);
+        }
+        return result;
+    }
+
+    /** Return the number of pieces in the largest positions in my
+     *  tables. */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /** Return the result of BOARD for the side to move (WIN, LOSS, or
+     *  DRAW), or UNKNOWN if it is not in my tables (because it has too
+     *  many pieces or restrictions on horizontal moves).  Any number of
+     *  threads may probe at once. */
+    int probe(Board board) {
+        int white = board.pieces(WHITE), black = board.pieces(BLACK);
+        int nw = Integer.bitCount(white), nb = Integer.bitCount(black);
+        if (nw + nb > _maxPieces || board.restricted()) {
+            return UNKNOWN;
+        }
+        return _tables[signature(nw, nb)]
+            .get(index(white, black, board.whoseMove()));
+    }
+
+    /** Build the tables according to ARGS (see the class comment). */
+    public static void main(String... args) {
+        if (args.length < 2 || args.length > 3
+            || !args[1].matches("[1-9]")
+            || Integer.parseInt(args[1]) > MAX_PIECES
+            || (args.length == 3 && !args[2].matches("0*[1-9]\\d{0,2}"))) {
+            System.err.printf("Usage: java qirkat.Tablebase DIRECTORY "
+                              + "PIECES [THREADS], where PIECES <= %d%n",
+                              MAX_PIECES);
+            System.exit(1);
+        }
+        int threads = args.length == 3 ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+        try {
+            generate(new File(args[0]), Integer.parseInt(args[1]), threads,
+                     true);
+        } catch (IOException excp) {
+            System.err.printf("Could not write tables: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Write the tables for all positions of at most PIECES pieces to
+     *  DIRECTORY, using THREADS threads, and reporting progress on the
+     *  standard error iff VERBOSE. */
+    static void generate(File directory, int pieces, int threads,
+                         boolean verbose) throws IOException {
+        Files.createDirectories(directory.toPath());
+        byte[][] tables = new byte[NUM_SIGNATURES][];
+        for (int n = 1; n <= pieces; n += 1) {
+            for (int white = 0; white <= n; white += 1) {
+                long start = System.currentTimeMillis();
+                byte[] table = solve(tables, white, n - white, threads);
+                tables[signature(white, n - white)] = table;
+                TablebaseFile.write(new File(directory,
+                                             fileName(white, n - white)),
+                                    white, n - white, table);
+                if (verbose) {
+                    System.err.printf("%s: %d positions in %d msec.%n",
+                                      fileName(white, n - white),
+                                      table.length,
+                                      System.currentTimeMillis() - start);
+                }
+            }
+        }
+    }
+
+    /** Return the table for positions with WHITE white and BLACK black
+     *  pieces, given that TABLES holds the tables for all positions with
+     *  fewer pieces (indexed by signature), using THREADS threads.  Sweep
+     *  P resolves exactly the positions won or lost in P moves, so that
+     *  each result depends only on results fixed by earlier sweeps, and
+     *  the threads of a sweep need not coordinate. */
+    private static byte[] solve(byte[][] tables, int white, int black,
+                                int threads) {
+        byte[] table = new byte[(int) size(white, black)];
+        tables[signature(white, black)] = table;
+        int longest = longest(tables);
+        AtomicBoolean changed = new AtomicBoolean(true);
+        for (int p = 0; changed.get() || p <= longest; p += 1) {
+            final int plies = p;
+            changed.set(false);
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t += 1) {
+                int start = (int) ((long) table.length * t / threads),
+                    end = (int) ((long) table.length * (t + 1) / threads);
+                workers[t] = new Thread(() -> {
+                    if (sweep(tables, white, black, plies, start, end)) {
+                        changed.set(true);
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException excp) {
+                    throw new IllegalStateException("interrupted");
+                }
+            }
+        }
+        return table;
+    }
+
+    /** Return the largest number of moves to a win or loss in any of
+     *  TABLES. */
+    private static int longest(byte[][] tables) {
+        int result;
+        result = 0;
+        for (byte[] table : tables) {
+            if (table != null) {
+                for (byte value : table) {
+                    result = Math.max(result, Math.abs(value) - 1);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Resolve the positions won or lost in PLIES moves among the
+     *  unresolved positions with indices START .. END-1 in the table in
+     *  TABLES for WHITE white and BLACK black pieces.  Return true iff
+     *  there were any. */
+    private static boolean sweep(byte[][] tables, int white, int black,
+                                 int plies, int start, int end) {
+        byte[] table = tables[signature(white, black)];
+        Board board = new Board();
+        long[] moves = new long[Board.TYPICAL_MOVES];
+        int blackSets = (int) BINOMIAL[SQUARES - white][black];
+        boolean changed;
+        changed = false;
+        for (int i = start; i < end; i += 1) {
+            if (table[i] != 0) {
+                continue;
+            }
+            int placement = i / 2;
+            int whiteMask = unrank(placement / blackSets, white,
+                                   Board.ALL_SQUARES);
+            int blackMask = unrank(placement % blackSets, black,
+                                   ~whiteMask & Board.ALL_SQUARES);
+            board.setPosition(whiteMask, blackMask,
+                              i % 2 == 0 ? WHITE : BLACK);
+            int result = resolve(tables, board, moves);
+            if (Math.abs(result) == plies + 1) {
+                if (plies >= Byte.MAX_VALUE) {
+                    throw new IllegalStateException("game too long for "
+                                                    + "tables");
+                }
+                table[i] = (byte) result;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /** Return the result of BOARD for the side to move (in the format
+     *  described in the class comment), given the results so far in
+     *  TABLES, in which 0 means unresolved or drawn, or 0 if it cannot
+     *  yet be determined.  MOVES is space for the moves from BOARD;
+     *  a larger array is used if it is too small. */
+    private static int resolve(byte[][] tables, Board board, long[] moves) {
+        int end = board.getMoves(moves, 0);
+        if (end > moves.length) {
+            moves = new long[end];
+            board.getMoves(moves, 0);
+        }
+        int fastestWin, slowestLoss;
+        boolean allLost;
+        fastestWin = Integer.MAX_VALUE;
+        slowestLoss = 0;
+        allLost = true;
+        for (int i = 0; i < end; i += 1) {
+            board.makeMove(moves[i]);
+            int white = board.pieces(WHITE), black = board.pieces(BLACK);
+            int reply = tables[signature(Integer.bitCount(white),
+                                         Integer.bitCount(black))]
+                [index(white, black, board.whoseMove())];
+            board.undo();
+            if (reply < 0) {
+                fastestWin = Math.min(fastestWin, -reply);
+            } else if (reply == 0) {
+                allLost = false;
+            } else {
+                slowestLoss = Math.max(slowestLoss, reply);
+            }
+        }
+        if (fastestWin != Integer.MAX_VALUE) {
+            return fastestWin + 1;
+        } else if (allLost) {
+            return -(slowestLoss + 1);
+        } else {
+            return 0;
+        }
+    }
+
+    /** Return the index of the position with White's pieces on the
+     *  squares in the mask WHITE, Black's on those in BLACK, and SIDE to
+     *  move, in the table for its numbers of pieces. */
+    static int index(int white, int black, PieceColor side) {
+        int blackSets = (int) BINOMIAL[SQUARES - Integer.bitCount(white)]
+            [Integer.bitCount(black)];
+        int placement = rank(white, Board.ALL_SQUARES) * blackSets
+            + rank(black, ~white & Board.ALL_SQUARES);
+        return 2 * placement + (side == WHITE ? 0 : 1);
+    }
+
+    /** Return the rank of the set SET among the sets of its size of
+     *  members of the set UNIVERSE (which contains it), in the
+     *  combinatorial number system: the sum of BINOMIAL[J][I + 1] for
+     *  the I-th smallest member of SET, where J is its position in
+     *  UNIVERSE. */
+    private static int rank(int set, int universe) {
+        int result, i, j;
+        result = i = j = 0;
+        for (int u = universe; u != 0; u &= u - 1) {
+            int bit = u & -u;
+            if ((set & bit) != 0) {
+                i += 1;
+                result += BINOMIAL[j][i];
+            }
+            j += 1;
+        }
+        return result;
+    }
+
+    /** Return the set of SIZE members of the set UNIVERSE whose rank
+     *  (see rank) is RANK. */
+    private static int unrank(int rank, int size, int universe) {
+        int[] members = new int[SQUARES];
+        int n;
+        n = 0;
+        for (int u = universe; u != 0; u &= u - 1) {
+            members[n] = Integer.numberOfTrailingZeros(u);
+            n += 1;
+        }
+        int set;
+        set = 0;
+        for (int i = size, j = n - 1; i > 0; i -= 1) {
+            while (BINOMIAL[j][i] > rank) {
+                j -= 1;
+            }
+            rank -= BINOMIAL[j][i];
+            set |= 1 << members[j];
+            j -= 1;
+        }
+        return set;
+    }
+
+    /** Return the number of positions with WHITE white and BLACK black
+     *  pieces. */
+    static long size(int white, int black) {
+        return 2 * BINOMIAL[SQUARES][white] * BINOMIAL[SQUARES - white][black];
+    }
+
+    /** Return the position in _tables of the table for WHITE white and
+     *  BLACK black pieces. */
+    private static int signature(int white, int black) {
+        return white * (MAX_PIECES + 1) + black;
+    }
+
+    /** Return the name of the file holding the table for WHITE white
+     *  and BLACK black pieces. */
+    static String fileName(int white, int black) {
+        return String.format("qirkat-%dw%db.tbz", white, black);
+    }
+
+    /** Number of squares. */
+    private static final int SQUARES = Move.MAX_INDEX + 1;
+
+    /** Number of possible signatures. */
+    private static final int NUM_SIGNATURES = signature(MAX_PIECES + 1, 0);
+
+    /** BINOMIAL[N][K] is N choose K (0 if K > N). */
+    private static final long[][] BINOMIAL =
+        new long[SQUARES + 1][SQUARES + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n += 1) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k += 1) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    /** The tables, indexed by signature (null for those I lack). */
+    private final TablebaseFile[] _tables =
+        new TablebaseFile[NUM_SIGNATURES];
+
+    /** Decompressed blocks of my tables. */
+    private final BlockCache _cache = new BlockCache(CACHE_BLOCKS);
+
+    /** The number of pieces in the largest positions in my tables. */
+    private int _maxPieces;
+
+}
@@ -0,0 +1,189 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** One table of a Tablebase, read from a memory-mapped file.  Each
+ *  result (win, loss, or draw for the side to move) occupies two bits,
+ *  four to a byte, lowest first.  The packed results are divided into
+ *  blocks of BLOCK_SIZE bytes, each compressed separately (by
+ *  java.util.zip.Deflater), so that a result can be found by
+ *  decompressing just its block.  Decompressed blocks are kept in a
+ *  BlockCache, which may be shared among files.
+ *
+ *  A file contains a header (a magic number, the numbers of white and
+ *  black pieces, and the number of blocks), the offsets of the blocks
+ *  in the file followed by the offset of its end, and the blocks.
+ *
+ *  Several threads may probe the same file at once.
+ *  @author andrew
+ */
+class TablebaseFile {
+
+    /** Size of a decompressed block (bytes). */
+    static final int BLOCK_SIZE = 1 << 12;
+
+    /** Results per block. */
+    static final int BLOCK_RESULTS = 4 * BLOCK_SIZE;
+
+    /** The table for WHITE white and BLACK black pieces in FILE, caching
+     *  its decompressed blocks in CACHE. */
+    TablebaseFile(File file, int white, int black, BlockCache cache)
+        throws IOException {
+        _cache = cache;
+        _id = (long) NEXT_ID.incrementAndGet() << ID_SHIFT;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length < HEADER || in.readInt() != MAGIC
+                || in.readShort() != white || in.readShort() != black) {
+                throw new IOException("bad tablebase file " + file);
+            }
+            int blocks = in.readInt();
+            if (blocks != blocks(Tablebase.size(white, black))
+                || length < HEADER + 4L * (blocks + 1)) {
+                throw new IOException("bad tablebase file " + file);
+            }
+            _data = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                                        0, length);
+            _offsets = new int[blocks + 1];
+            for (int b = 0; b <= blocks; b += 1) {
+                _offsets[b] = _data.getInt(HEADER + 4 * b);
+                if (_offsets[b] > length
+                    || (b > 0 && _offsets[b] < _offsets[b - 1])) {
+                    throw new IOException("bad tablebase file " + file);
+                }
+            }
+        }
+    }
+
+    /** Return the result with index I (Tablebase.WIN, LOSS, or
+     *  DRAW). */
+    int get(int i) {
+        int bits = (block(i / BLOCK_RESULTS)[(i % BLOCK_RESULTS) / 4]
+                    >> (2 * (i % 4))) & 3;
+        return CODES[bits];
+    }
+
+    /** Write RESULTS, the table for WHITE white and BLACK black pieces,
+     *  to FILE.  A result is positive for a win and negative for a loss
+     *  (for the side to move), and 0 for a draw. */
+    static void write(File file, int white, int black, byte[] results)
+        throws IOException {
+        int blocks = blocks(results.length);
+        byte[] packed = new byte[blocks * BLOCK_SIZE];
+        for (int i = 0; i < results.length; i += 1) {
+            int code = results[i] > 0 ? WIN_CODE
+                : results[i] < 0 ? LOSS_CODE : DRAW_CODE;
+            packed[i / 4] |= code << (2 * (i % 4));
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] buffer = new byte[2 * BLOCK_SIZE];
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeShort(white);
+            out.writeShort(black);
+            out.writeInt(blocks);
+            int offset = HEADER + 4 * (blocks + 1);
+            out.seek(offset);
+            int[] offsets = new int[blocks + 1];
+            for (int b = 0; b < blocks; b += 1) {
+                offsets[b] = offset;
+                deflater.reset();
+                deflater.setInput(packed, b * BLOCK_SIZE, BLOCK_SIZE);
+                deflater.finish();
+                int size = deflater.deflate(buffer);
+                if (!deflater.finished()) {
+                    throw new IOException("block too large");
+                }
+                out.write(buffer, 0, size);
+                offset += size;
+            }
+            offsets[blocks] = offset;
+            out.seek(HEADER);
+            for (int off : offsets) {
+                out.writeInt(off);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Return the decompressed block number B, from the cache if
+     *  possible. */
+    private byte[] block(int b) {
+        long key = _id | b;
+        byte[] block = _cache.get(key);
+        if (block == null) {
+            block = inflate(b);
+            _cache.put(key, block);
+        }
+        return block;
+    }
+
+    /** Return block B, decompressed from my file. */
+    private byte[] inflate(int b) {
+        byte[] compressed = new byte[_offsets[b + 1] - _offsets[b]];
+        ByteBuffer data = _data.duplicate();
+        data.position(_offsets[b]);
+        data.get(compressed);
+        byte[] block = new byte[BLOCK_SIZE];
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            if (inflater.inflate(block) != BLOCK_SIZE) {
+                throw new IllegalStateException("corrupt tablebase block");
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalStateException("corrupt tablebase block");
+        }
+        return block;
+    }
+
+    /** Return the number of blocks needed for N results. */
+    private static int blocks(long n) {
+        return (int) ((n + BLOCK_RESULTS - 1) / BLOCK_RESULTS);
+    }
+
+    /** Size of the header, and the value identifying tablebase files. */
+    private static final int HEADER = 12, MAGIC = 0x51544232;
+
+    /** Two-bit codes for results. */
+    private static final int DRAW_CODE = 0, WIN_CODE = 1, LOSS_CODE = 2;
+
+    /** Results indexed by two-bit code. */
+    private static final int[] CODES = {
+        Tablebase.DRAW, Tablebase.WIN, Tablebase.LOSS, Tablebase.DRAW
+    };
+
+    /** Cache keys are my _id plus the block number, which is less than
+     *  2 to the ID_SHIFT. */
+    private static final int ID_SHIFT = 32;
+
+    /** Source of distinct identifiers for files. */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /** A decompressor for each thread. */
+    private static final ThreadLocal<Inflater> INFLATERS =
+        ThreadLocal.withInitial(Inflater::new);
+
+    /** The contents of my file. */
+    private final MappedByteBuffer _data;
+    /** _offsets[B] is the position of block B in _data, and
+     *  _offsets[B + 1] the position just after it. */
+    private final int[] _offsets;
+    /** The cache of decompressed blocks. */
+    private final BlockCache _cache;
+    /** My identifier in cache keys. */
+    private final long _id;
+
+}
@@ -0,0 +1,96 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of the endgame tablebases.
+ *  @author andrew
+ */
+public class TablebaseTest {
+
+    @Test
+    public void testIndex() {
+        HashSet<Integer> indices = new HashSet<>();
+        for (int w1 = 0; w1 <= Move.MAX_INDEX; w1 += 1) {
+            for (int w2 = w1 + 1; w2 <= Move.MAX_INDEX; w2 += 1) {
+                for (int b = 0; b <= Move.MAX_INDEX; b += 1) {
+                    if (b != w1 && b != w2) {
+                        int white = (1 << w1) | (1 << w2);
+                        for (PieceColor side : new PieceColor[] {
+                                WHITE, BLACK }) {
+                            int i = Tablebase.index(white, 1 << b, side);
+                            assertTrue(i >= 0 && i < Tablebase.size(2, 1));
+                            indices.add(i);
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(Tablebase.size(2, 1), indices.size());
+    }
+
+    /** Check that the results of positions with up to three pieces
+     *  agree with those of the positions after each move. */
+    @Test
+    public void testResults() throws IOException {
+        File dir = Files.createTempDirectory("qirkat").toFile();
+        try {
+            Tablebase.generate(dir, 3, 2, false);
+            Tablebase tables = Tablebase.load(dir);
+            assertEquals(3, tables.maxPieces());
+            Random random = new Random(61);
+            Board board = new Board(), child = new Board();
+            ArrayList<Move> moves = new ArrayList<>();
+            for (int n = 0; n < 2000; n += 1) {
+                int white, black;
+                white = black = 0;
+                int pieces = 2 + random.nextInt(2);
+                while (Integer.bitCount(white | black) < pieces) {
+                    int bit = 1 << random.nextInt(Move.MAX_INDEX + 1);
+                    if (random.nextBoolean() || white == 0) {
+                        white |= bit & ~black;
+                    } else {
+                        black |= bit & ~white;
+                    }
+                }
+                board.setPosition(white, black,
+                                  random.nextBoolean() ? WHITE : BLACK);
+                moves.clear();
+                board.getMoves(moves);
+                boolean canWin, allLost;
+                canWin = false;
+                allLost = true;
+                for (Move mov : moves) {
+                    board.makeMove(mov);
+                    child.setPosition(board.pieces(WHITE),
+                                      board.pieces(BLACK),
+                                      board.whoseMove());
+                    board.undo();
+                    int reply = tables.probe(child);
+                    canWin |= reply == Tablebase.LOSS;
+                    allLost &= reply == Tablebase.WIN;
+                }
+                int expected = canWin ? Tablebase.WIN
+                    : allLost ? Tablebase.LOSS : Tablebase.DRAW;
+                assertEquals(board.toString(), expected,
+                             tables.probe(board));
+            }
+            assertEquals(Tablebase.UNKNOWN, tables.probe(new Board()));
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A fixed-size cache of search results, indexed by Board.key().
+ *
+ *  The table is an array of buckets, whose number is a power of two, each
+ *  holding two entries.  The first entry of a bucket is replaced only by
+ *  a result from a search at least as deep (depth-preferred); the second
+ *  is always replaced.  Each entry occupies two consecutive longs: the
+ *  full key XORed with the data word, and a data word packing the score,
+ *  depth, bound type, and index of the best move.  No objects are
+ *  allocated after construction.
+ *
+ *  Several searching threads may share a table without locking.  Two
+ *  threads storing into the same entry at once may leave it with the key
+ *  word of one and the data word of the other (or, since writes of longs
+ *  need not be atomic, with halves of each), but the XOR makes such an
+ *  entry fail to match either key, so probe never returns a data word
+ *  for a position other than the one it was stored for.
+ *  @author andrew
+ */
+class TranspositionTable {
+
+    /** Bound types: the stored score is the exact value, a lower bound,
+     *  or an upper bound of the position. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Value of probe() when there is no entry for a key. */
+    static final long MISSING = 0;
+
+    /** Value of move() when no best move was recorded. */
+    static final int NO_MOVE = 0xff;
+
+    /** Bytes occupied by one bucket. */
+    static final int BUCKET_BYTES = 4 * Long.BYTES;
+
+    /** Bit offsets of the fields of a data word: score in the low 32
+     *  bits, then depth, bound type, and move index, each a byte. */
+    private static final int
+        DEPTH_SHIFT = 32,
+        BOUND_SHIFT = 40,
+        MOVE_SHIFT = 48;
+
+    /** Mask for a one-byte field. */
+    private static final int BYTE = 0xff;
+
+    /** A table occupying about MEGABYTES megabytes (the largest power of
+     *  two buckets that fit, and at least one bucket). */
+    TranspositionTable(int megabytes) {
+        long bytes = (long) megabytes << 20;
+        int buckets;
+        buckets = 1;
+        while ((long) buckets * 2 * BUCKET_BYTES <= bytes
+               && buckets < MAX_BUCKETS) {
+            buckets *= 2;
+        }
+        _mask = buckets - 1;
+        _entries = new long[4 * buckets];
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _entries.length / 2;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_entries, 0);
+    }
+
+    /** Return the data word stored for KEY, or MISSING if there is none.
+     *  Use the static methods score, depth, bound, and move to decode the
+     *  result. */
+    long probe(long key) {
+        int i = bucket(key);
+        long data0 = _entries[i + 1], data1 = _entries[i + 3];
+        if ((_entries[i] ^ data0) == key && data0 != MISSING) {
+            return data0;
+        } else if ((_entries[i + 2] ^ data1) == key && data1 != MISSING) {
+            return data1;
+        }
+        return MISSING;
+    }
+
+    /** Record that a search of the position with key KEY to depth DEPTH
+     *  produced SCORE, which is of bound type BOUND, and that the best
+     *  move found had index MOVE (or NO_MOVE) in the move list.  Indices
+     *  of NO_MOVE or more are recorded as NO_MOVE. */
+    void store(long key, int depth, int score, int bound, int move) {
+        int i = bucket(key);
+        long data = (score & 0xffffffffL)
+            | ((long) (Math.min(depth, BYTE)) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) Math.min(move, NO_MOVE) << MOVE_SHIFT);
+        long data0 = _entries[i + 1];
+        if ((_entries[i] ^ data0) == key || data0 == MISSING
+            || depth >= depth(data0)) {
+            _entries[i] = key ^ data;
+            _entries[i + 1] = data;
+        } else {
+            _entries[i + 2] = key ^ data;
+            _entries[i + 3] = data;
+        }
+    }
+
+    /** Return the score in data word DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the search depth in data word DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & BYTE;
+    }
+
+    /** Return the bound type in data word DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BYTE;
+    }
+
+    /** Return the best-move index in data word DATA, or NO_MOVE. */
+    static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT) & BYTE;
+    }
+
+    /** Return the index in _entries of the bucket for KEY. */
+    private int bucket(long key) {
+        return (int) ((key ^ (key >>> Integer.SIZE)) & _mask) * 4;
+    }
+
+    /** Largest number of buckets (limited by the maximum array size). */
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    /** Mask selecting a bucket number from a key. */
+    private final int _mask;
+
+    /** The buckets: key (XOR data) and data words of the depth-preferred
+     *  entry, followed by those of the always-replace entry. */
+    private final long[] _entries;
+
+}
@@ -0,0 +1,124 @@
+package qirkat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.TranspositionTable.*;
+
+/** Tests of TranspositionTable.
+ *  @author andrew
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(MISSING, table.probe(0x123456789abcdefL));
+        table.store(0x123456789abcdefL, 7, -4321, LOWER, 12);
+        table.store(-99L, 3, Integer.MAX_VALUE - 1, EXACT, NO_MOVE);
+        long data = table.probe(0x123456789abcdefL);
+        assertEquals(-4321, score(data));
+        assertEquals(7, depth(data));
+        assertEquals(LOWER, bound(data));
+        assertEquals(12, move(data));
+        data = table.probe(-99L);
+        assertEquals(Integer.MAX_VALUE - 1, score(data));
+        assertEquals(3, depth(data));
+        assertEquals(EXACT, bound(data));
+        assertEquals(NO_MOVE, move(data));
+        table.store(-99L, 3, 0, UPPER, 1000);
+        assertEquals(NO_MOVE, move(table.probe(-99L)));
+        table.clear();
+        assertEquals(MISSING, table.probe(-99L));
+    }
+
+    /** A table of 0 megabytes has a single bucket, so that all keys
+     *  collide. */
+    @Test
+    public void testCollision() {
+        TranspositionTable table = new TranspositionTable(0);
+        assertEquals(2, table.capacity());
+        table.store(1, 4, 10, EXACT, 0);
+        assertEquals(MISSING, table.probe(2));
+        assertEquals(MISSING, table.probe(1L << 40));
+        assertEquals(10, score(table.probe(1)));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(0);
+        table.store(1, 5, 1, EXACT, 0);
+        table.store(2, 3, 2, EXACT, 0);
+        assertEquals(1, score(table.probe(1)));
+        assertEquals(2, score(table.probe(2)));
+        table.store(3, 2, 3, EXACT, 0);
+        assertEquals(1, score(table.probe(1)));
+        assertEquals(MISSING, table.probe(2));
+        assertEquals(3, score(table.probe(3)));
+        table.store(4, 6, 4, EXACT, 0);
+        assertEquals(MISSING, table.probe(1));
+        assertEquals(4, score(table.probe(4)));
+        assertEquals(3, score(table.probe(3)));
+        table.store(4, 1, 5, UPPER, 0);
+        assertEquals(5, score(table.probe(4)));
+        assertEquals(1, depth(table.probe(4)));
+        table.store(5, 0, 6, EXACT, 0);
+        assertEquals(5, score(table.probe(4)));
+        assertEquals(6, score(table.probe(5)));
+        assertEquals(MISSING, table.probe(3));
+        table.store(6, 1, 7, EXACT, 0);
+        assertEquals(MISSING, table.probe(4));
+        assertEquals(7, score(table.probe(6)));
+    }
+
+    /** Return the score stored with KEY by the threads of testTorn. */
+    private static int scoreFor(long key) {
+        return (int) (key * 0x9e3779b97f4a7c15L >>> 33);
+    }
+
+    /** Several threads store entries for different keys into the one
+     *  bucket of a table, so that their writes interleave, while another
+     *  probes.  Every data word found must be the one stored for the key
+     *  probed. */
+    @Test
+    public void testTorn() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(0);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] writers = new Thread[3];
+        for (int t = 0; t < writers.length; t += 1) {
+            long first = t + 1;
+            writers[t] = new Thread(() -> {
+                for (long key = first; !done.get();
+                     key += writers.length) {
+                    long k = key % 16 + 1;
+                    table.store(k, (int) k, scoreFor(k), EXACT,
+                                (int) k);
+                }
+            });
+            writers[t].start();
+        }
+        int found;
+        found = 0;
+        try {
+            for (int n = 0; n < 2000000; n += 1) {
+                long key = n % 16 + 1;
+                long data = table.probe(key);
+                if (data != MISSING) {
+                    found += 1;
+                    assertEquals(scoreFor(key), score(data));
+                    assertEquals(key, depth(data));
+                    assertEquals(key, move(data));
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        assertTrue(found > 0);
+    }
+
+}
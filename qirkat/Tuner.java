@@ -0,0 +1,365 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static qirkat.PieceColor.*;
+
+/** Offline tuning of the weights of PositionalEvaluator from the results
+ *  of games (the "Texel" method).  Usage:
+ *
+ *      java qirkat.Tuner generate GAMES FILE
+ *      java qirkat.Tuner tune POSITIONS FILE [ITERATIONS]
+ *
+ *  The first plays GAMES games of the AI against itself, from openings
+ *  of a few random moves, and writes each position that arises to FILE,
+ *  labeled with the game's result.  The second reads labeled positions
+ *  from POSITIONS and writes to FILE the weights (in the format read by
+ *  the --weights option and the 'weights' command) that best predict
+ *  the results.  Each line of a positions file is a 'set' command
+ *  followed by the result: 1-0 (White won), 0-1 (Black won), or 1/2
+ *  (unfinished); comments (from '#') and empty lines are ignored.
+ *
+ *  The prediction for a position of value V is the probability
+ *  1 / (1 + exp(-V / S)) that White wins, where the scale S is chosen
+ *  to fit the starting weights.  Tuning minimizes the logistic loss
+ *  (cross-entropy) of the predictions, by gradient descent with
+ *  adaptive steps (Adam), with the gradient computed by several
+ *  threads.  Positions in which the side to move can capture are not
+ *  quiet, and are skipped, since the static value means little there.
+ *  The material weight is held fixed, as it sets the scale of the
+ *  others.
+ *  @author andrew
+ */
+class Tuner {
+
+    /** Generate or tune according to ARGS (see the class comment). */
+    public static void main(String... args) {
+        try {
+            if (args.length == 3 && args[0].equals("generate")
+                && args[1].matches("\\d{1,7}")) {
+                generate(Integer.parseInt(args[1]), args[2]);
+                return;
+            } else if ((args.length == 3 || args.length == 4)
+                       && args[0].equals("tune")
+                       && (args.length == 3 || args[3].matches("\\d{1,7}"))) {
+                tune(args[1], args[2], args.length == 3 ? DEFAULT_ITERATIONS
+                     : Integer.parseInt(args[3]));
+                return;
+            }
+        } catch (IOException excp) {
+            System.err.printf("I/O error: %s%n", excp.getMessage());
+            System.exit(1);
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+        System.err.println("Usage: java qirkat.Tuner generate GAMES FILE");
+        System.err.println("       java qirkat.Tuner tune POSITIONS FILE "
+                           + "[ITERATIONS]");
+        System.exit(1);
+    }
+
+    /** Play GAMES games of the AI against itself, and write the positions
+     *  that arise, labeled with the results, to the file named OUT. */
+    static void generate(int games, String out) throws IOException {
+        Random random = new Random(GENERATE_SEED);
+        Game game = new Game(new Board(),
+                             new ReaderSource(new StringReader(""), false),
+                             new NullReporter());
+        AI white = new AI(game, WHITE), black = new AI(game, BLACK);
+        try (PrintWriter output = new PrintWriter(new FileWriter(out))) {
+            for (int g = 0; g < games; g += 1) {
+                playGame(white, black, random, output);
+            }
+        }
+    }
+
+    /** Play one game between the AIs WHITE and BLACK, opening with
+     *  OPENING_MOVES random moves chosen using RANDOM, and write the
+     *  positions after the opening, labeled with the result, to OUT. */
+    private static void playGame(AI white, AI black, Random random,
+                                 PrintWriter out) {
+        Board board = new Board();
+        ArrayList<String> positions = new ArrayList<>();
+        String result;
+        for (int n = 0; true; n += 1) {
+            ArrayList<Move> moves = board.getMoves();
+            if (moves.isEmpty()) {
+                result = board.whoseMove() == WHITE ? "0-1" : "1-0";
+                break;
+            } else if (n == MAX_GAME_MOVES) {
+                result = "1/2";
+                break;
+            }
+            Move mov;
+            if (n < OPENING_MOVES) {
+                mov = moves.get(random.nextInt(moves.size()));
+            } else {
+                positions.add(setCommand(board));
+                AI player = board.whoseMove() == WHITE ? white : black;
+                mov = player.findMove(board, GENERATE_DEPTH);
+            }
+            board.makeMove(mov);
+        }
+        for (String position : positions) {
+            out.println(position + " " + result);
+        }
+    }
+
+    /** Return the 'set' command that sets up BOARD. */
+    static String setCommand(Board board) {
+        StringBuilder cmnd = new StringBuilder("set ");
+        cmnd.append(board.whoseMove().toString().toLowerCase());
+        for (int k = 0; k <= Move.MAX_INDEX; k += 1) {
+            if (k % Move.SIDE == 0) {
+                cmnd.append(' ');
+            }
+            cmnd.append(board.get(k).shortName());
+        }
+        return cmnd.toString();
+    }
+
+    /** Tune the weights for the positions in the file named IN, starting
+     *  from the defaults and using ITERATIONS steps of gradient descent,
+     *  and write the result to the file named OUT. */
+    static void tune(String in, String out, int iterations)
+        throws IOException {
+        Tuner tuner = new Tuner(in);
+        System.err.printf("%d positions (%d skipped as not quiet).%n",
+                          tuner._results.length, tuner._skipped);
+        if (tuner._results.length == 0) {
+            throw GameException.error("no quiet positions in %s", in);
+        }
+        double[] weights = new double[PositionalEvaluator.NUM_WEIGHTS];
+        int[] initial = PositionalEvaluator.DEFAULT_WEIGHTS;
+        for (int i = 0; i < weights.length; i += 1) {
+            weights[i] = initial[i];
+        }
+        tuner.fitScale(weights);
+        System.err.printf("Scale %.0f, initial loss %.6f.%n", tuner._scale,
+                          tuner.loss(weights, null));
+        tuner.descend(weights, iterations);
+        int[] result = new int[weights.length];
+        for (int i = 0; i < weights.length; i += 1) {
+            result[i] = (int) Math.round(weights[i]);
+        }
+        System.err.printf("Final loss %.6f.%n", tuner.loss(weights, null));
+        try (PrintWriter output = new PrintWriter(new FileWriter(out))) {
+            output.printf("# Tuned on %d positions from %s.%n",
+                          tuner._results.length, in);
+            new PositionalEvaluator(result).write(output);
+        }
+    }
+
+    /** A Tuner for the labeled positions in the file named IN. */
+    private Tuner(String in) throws IOException {
+        ArrayList<int[]> features = new ArrayList<>();
+        ArrayList<Double> results = new ArrayList<>();
+        Board board = new Board();
+        try (BufferedReader input = new BufferedReader(new FileReader(in))) {
+            int lineNum;
+            lineNum = 0;
+            for (String line = input.readLine(); line != null;
+                 line = input.readLine()) {
+                lineNum += 1;
+                line = line.replaceFirst("#.*", "").trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int split = line.lastIndexOf(' ');
+                Command cmnd =
+                    Command.parseCommand(line.substring(0, split + 1));
+                double result = parseResult(line.substring(split + 1));
+                if (split < 0 || result < 0
+                    || cmnd.commandType() != Command.Type.SETBOARD) {
+                    throw GameException.error("bad position on line %d",
+                                              lineNum);
+                }
+                board.setPieces(cmnd.operands()[1],
+                                PieceColor.valueOf(cmnd.operands()[0]
+                                                   .toUpperCase()));
+                if (board.jumpPossible()) {
+                    _skipped += 1;
+                    continue;
+                }
+                int[] f = new int[PositionalEvaluator.NUM_WEIGHTS];
+                PositionalEvaluator.features(board, f);
+                features.add(f);
+                results.add(result);
+            }
+        }
+        _features = features.toArray(new int[0][]);
+        _results = new double[results.size()];
+        for (int i = 0; i < _results.length; i += 1) {
+            _results[i] = results.get(i);
+        }
+    }
+
+    /** Return the result for White denoted by RESULT, or -1 if it is not
+     *  a valid result. */
+    private static double parseResult(String result) {
+        switch (result) {
+        case "1-0":
+            return 1.0;
+        case "0-1":
+            return 0.0;
+        case "1/2":
+            return 0.5;
+        default:
+            return -1.0;
+        }
+    }
+
+    /** Set _scale to the value among SCALES that minimizes the loss with
+     *  WEIGHTS. */
+    private void fitScale(double[] weights) {
+        double best = Double.MAX_VALUE;
+        double bestScale = SCALES[0];
+        for (double scale : SCALES) {
+            _scale = scale;
+            double loss = loss(weights, null);
+            if (loss < best) {
+                best = loss;
+                bestScale = scale;
+            }
+        }
+        _scale = bestScale;
+    }
+
+    /** Improve WEIGHTS by ITERATIONS steps of gradient descent, using
+     *  the Adam rule to choose the size of each step.  The material
+     *  weight is unchanged. */
+    private void descend(double[] weights, int iterations) {
+        int n = weights.length;
+        double[] gradient = new double[n],
+            mean = new double[n], variance = new double[n];
+        for (int t = 1; t <= iterations; t += 1) {
+            double loss = loss(weights, gradient);
+            gradient[PositionalEvaluator.MATERIAL] = 0.0;
+            for (int i = 0; i < n; i += 1) {
+                mean[i] = BETA1 * mean[i] + (1 - BETA1) * gradient[i];
+                variance[i] = BETA2 * variance[i]
+                    + (1 - BETA2) * gradient[i] * gradient[i];
+                double m = mean[i] / (1 - Math.pow(BETA1, t)),
+                    v = variance[i] / (1 - Math.pow(BETA2, t));
+                weights[i] -= LEARNING_RATE * m / (Math.sqrt(v) + EPSILON);
+            }
+            if (t % REPORT_INTERVAL == 0) {
+                System.err.printf("Iteration %d: loss %.6f.%n", t, loss);
+            }
+        }
+    }
+
+    /** Return the mean logistic loss of the predictions made with
+     *  WEIGHTS.  If GRADIENT is not null, also set it to the gradient of
+     *  the loss with respect to WEIGHTS.  The work is divided among
+     *  threads, one per processor. */
+    private double loss(double[] weights, double[] gradient) {
+        int threads = Math.min(PROCESSORS, _results.length);
+        double[][] gradients = new double[threads][weights.length];
+        double[] losses = new double[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t += 1) {
+            final int id = t;
+            final int start = _results.length * t / threads,
+                end = _results.length * (t + 1) / threads;
+            workers[t] = new Thread(() -> {
+                losses[id] = loss(weights, start, end,
+                                  gradient == null ? null : gradients[id]);
+            });
+            workers[t].start();
+        }
+        double total;
+        total = 0.0;
+        for (int t = 0; t < threads; t += 1) {
+            try {
+                workers[t].join();
+            } catch (InterruptedException excp) {
+                throw new IllegalStateException("interrupted");
+            }
+            total += losses[t];
+        }
+        if (gradient != null) {
+            for (int i = 0; i < gradient.length; i += 1) {
+                gradient[i] = 0.0;
+                for (int t = 0; t < threads; t += 1) {
+                    gradient[i] += gradients[t][i];
+                }
+                gradient[i] /= _results.length;
+            }
+        }
+        return total / _results.length;
+    }
+
+    /** Return the total logistic loss of the predictions made with
+     *  WEIGHTS for positions START .. END-1.  If GRADIENT is not null,
+     *  add the gradient of that total to it. */
+    private double loss(double[] weights, int start, int end,
+                        double[] gradient) {
+        double total;
+        total = 0.0;
+        for (int p = start; p < end; p += 1) {
+            int[] f = _features[p];
+            double value;
+            value = 0.0;
+            for (int i = 0; i < f.length; i += 1) {
+                value += f[i] * weights[i];
+            }
+            double prob = 1.0 / (1.0 + Math.exp(-value / _scale));
+            prob = Math.min(Math.max(prob, EPSILON), 1.0 - EPSILON);
+            double result = _results[p];
+            total -= result * Math.log(prob)
+                + (1.0 - result) * Math.log(1.0 - prob);
+            if (gradient != null) {
+                double slope = (prob - result) / _scale;
+                for (int i = 0; i < f.length; i += 1) {
+                    gradient[i] += slope * f[i];
+                }
+            }
+        }
+        return total;
+    }
+
+    /** Number of random moves that open each generated game. */
+    private static final int OPENING_MOVES = 4;
+    /** Number of moves after which a generated game is abandoned (and
+     *  scored as a draw). */
+    private static final int MAX_GAME_MOVES = 200;
+    /** Depth of the AI's searches in generated games. */
+    private static final int GENERATE_DEPTH = 4;
+    /** Seed for the random openings of generated games. */
+    private static final long GENERATE_SEED = 61;
+    /** Default number of steps of gradient descent. */
+    private static final int DEFAULT_ITERATIONS = 500;
+    /** Progress is reported every REPORT_INTERVAL steps. */
+    private static final int REPORT_INTERVAL = 50;
+    /** Candidates for the scale of the predictions. */
+    private static final double[] SCALES = {
+        25, 35, 50, 70, 100, 140, 200, 280, 400, 560, 800,
+    };
+    /** Parameters of the Adam rule. */
+    private static final double
+        LEARNING_RATE = 1.0, BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-9;
+    /** Number of threads that compute the loss. */
+    private static final int PROCESSORS =
+        Runtime.getRuntime().availableProcessors();
+
+    /** _features[P] gives the coefficients of the weights in the value
+     *  of position P (see PositionalEvaluator.features). */
+    private final int[][] _features;
+    /** _results[P] is the result for White (1, 0.5, or 0) of the game
+     *  from which position P came. */
+    private final double[] _results;
+    /** Number of positions skipped because they are not quiet. */
+    private int _skipped;
+    /** Scale of the predictions (see the class comment). */
+    private double _scale;
+
+}